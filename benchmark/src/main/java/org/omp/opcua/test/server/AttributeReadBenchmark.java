@@ -0,0 +1,107 @@
+package org.omp.opcua.test.server;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.milo.opcua.sdk.core.AccessLevel;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.UaNodeManager;
+import org.eclipse.milo.opcua.sdk.server.api.NodeManager;
+import org.eclipse.milo.opcua.sdk.server.nodes.AttributeContext;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNodeContext;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilters;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.NamespaceTable;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.omp.opcua.test.server.simulation.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading the value attribute of a variable node, through an {@link AttributeFilters#getValue} filter chain, the
+ * same way the namespaces set up their nodes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttributeReadBenchmark {
+
+    private AttributeContext context;
+    private UaVariableNode simpleNode;
+    private UaVariableNode valueNode;
+
+    @Setup
+    public void setup() {
+        var nodeContext = createNodeContext();
+
+        this.context = new AttributeContext((OpcUaServer) null);
+
+        var random = new RandomSource(42);
+        var type = TestNamespace.SINGLE_TYPES[0];
+        this.simpleNode = createNode(nodeContext, "simple");
+        this.simpleNode.getFilterChain().addLast(AttributeFilters.getValue(ctx -> type.next(random)));
+
+        var value = new Value<>(42.0);
+        this.valueNode = createNode(nodeContext, "value");
+        this.valueNode.getFilterChain().addLast(AttributeFilters.getValue(ctx -> value.asDataValue()));
+    }
+
+    static UaNodeContext createNodeContext() {
+        var nodeManager = new UaNodeManager();
+        var namespaceTable = new NamespaceTable();
+        return new UaNodeContext() {
+            @Override
+            public OpcUaServer getServer() {
+                return null;
+            }
+
+            @Override
+            public NodeManager<UaNode> getNodeManager() {
+                return nodeManager;
+            }
+
+            @Override
+            public NamespaceTable getNamespaceTable() {
+                return namespaceTable;
+            }
+        };
+    }
+
+    static UaVariableNode createNode(final UaNodeContext context, final String name) {
+        return new UaVariableNode.UaVariableNodeBuilder(context)
+                .setNodeId(new NodeId(2, name))
+                .setAccessLevel(AccessLevel.READ_ONLY)
+                .setUserAccessLevel(AccessLevel.READ_ONLY)
+                .setBrowseName(new QualifiedName(2, name))
+                .setDisplayName(LocalizedText.english(name))
+                .setDataType(Identifiers.Double)
+                .setTypeDefinition(Identifiers.BaseDataVariableType)
+                .build();
+    }
+
+    @Benchmark
+    public DataValue readTestNode() {
+        return this.simpleNode.getAttribute(this.context, AttributeId.Value);
+    }
+
+    @Benchmark
+    public DataValue readSimulationNode() {
+        return this.valueNode.getAttribute(this.context, AttributeId.Value);
+    }
+}
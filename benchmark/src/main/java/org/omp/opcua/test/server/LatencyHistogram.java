@@ -0,0 +1,107 @@
+package org.omp.opcua.test.server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free, log-linear latency histogram, in microseconds.
+ * <p>
+ * Each power of two is split into 16 linear buckets, so recorded values are accurate to about 6%. Recording doesn't
+ * allocate, so it can run on the client's I/O threads.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    void record(final long micros) {
+        this.counts.incrementAndGet(indexOf(Math.max(0, micros)));
+    }
+
+    /**
+     * Move all recorded values into a snapshot, and reset this histogram.
+     */
+    Snapshot drain() {
+        var result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            result[i] = this.counts.getAndSet(i, 0);
+        }
+        return new Snapshot(result);
+    }
+
+    private static int indexOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        var exp = 63 - Long.numberOfLeadingZeros(value);
+        var sub = (int) (value >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long valueOf(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        var exp = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        var sub = index % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exp - SUB_BUCKET_BITS);
+    }
+
+    static final class Snapshot {
+
+        private final long[] counts;
+
+        Snapshot() {
+            this(new long[BUCKETS]);
+        }
+
+        private Snapshot(final long[] counts) {
+            this.counts = counts;
+        }
+
+        void add(final Snapshot other) {
+            for (int i = 0; i < BUCKETS; i++) {
+                this.counts[i] += other.counts[i];
+            }
+        }
+
+        long count() {
+            long result = 0;
+            for (var count : this.counts) {
+                result += count;
+            }
+            return result;
+        }
+
+        /**
+         * @param percentile The percentile, between 0 and 100.
+         * @return The lower bound of the bucket containing the percentile, or zero if empty.
+         */
+        long percentile(final double percentile) {
+            var total = count();
+            if (total == 0) {
+                return 0;
+            }
+            var rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += this.counts[i];
+                if (seen >= rank) {
+                    return valueOf(i);
+                }
+            }
+            return valueOf(BUCKETS - 1);
+        }
+
+        long max() {
+            for (int i = BUCKETS - 1; i >= 0; i--) {
+                if (this.counts[i] != 0) {
+                    return valueOf(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.omp.opcua.test.server;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.identity.UsernameProvider;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscription;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MonitoringMode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemCreateRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoringParameters;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.omp.opcua.test.server.simulation.SimulationNamespace;
+import org.omp.opcua.test.server.storm.StormNamespace;
+
+/**
+ * One client of the {@link LoadTest}, subscribing to a slice of the test server's address space.
+ */
+class LoadClient {
+
+    /**
+     * Number of monitored items per CreateMonitoredItems request.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String[] DEVICE_VARIABLES = new String[]{
+            "ambientTemperatureSetpoint",
+            "temperature",
+            "ambientTemperature",
+            "powerConsumption",
+            "active",
+    };
+
+    private final int index;
+    private final LoadTest.Options options;
+    private final LongAdder notifications;
+    private final LongAdder reads;
+    private final LatencyHistogram latency;
+    private final List<ReadValueId> items = new ArrayList<>();
+
+    private OpcUaClient client;
+    private volatile boolean running;
+    private Thread reader;
+
+    LoadClient(final int index, final LoadTest.Options options, final LongAdder notifications, final LongAdder reads, final LatencyHistogram latency) {
+        this.index = index;
+        this.options = options;
+        this.notifications = notifications;
+        this.reads = reads;
+        this.latency = latency;
+    }
+
+    void connect(final String endpointUrl) throws Exception {
+        this.client = OpcUaClient.create(
+                endpointUrl,
+                endpoints -> endpoints.stream()
+                        .filter(e -> SecurityPolicy.None.getUri().equals(e.getSecurityPolicyUri()))
+                        .filter(e -> e.getEndpointUrl().endsWith("/milo"))
+                        .findFirst(),
+                builder -> builder
+                        .setApplicationName(LocalizedText.english("OMP OPC UA Load Test " + this.index))
+                        .setApplicationUri("urn:omp:milo:load-test:" + this.index)
+                        .setIdentityProvider(new UsernameProvider("milo", Server.USERS.get("milo")))
+                        .setRequestTimeout(uint(60_000))
+                        .build());
+        this.client.connect().get();
+
+        var namespaces = this.client.readNamespaceTable();
+        var test = namespaces.getIndex(TestNamespace.NAMESPACE_URI).intValue();
+        var simulation = namespaces.getIndex(SimulationNamespace.NAMESPACE_URI).intValue();
+
+        addInstances(test, "Single", this.options.singles, this.options.numberOfSimple);
+        addInstances(test, "Array", this.options.arrays, this.options.numberOfArray);
+        addDevices(simulation, this.options.devices, this.options.numberOfDevices);
+
+        if (this.options.storm > 0 && this.options.numberOfStormItems > 0) {
+            var storm = namespaces.getIndex(StormNamespace.NAMESPACE_URI).intValue();
+            addStormItems(storm, this.options.stormProfile, this.options.storm, this.options.numberOfStormItems);
+        }
+    }
+
+    /**
+     * Add a slice of the instances, starting after the slices of the previous clients. Slices wrap around, so that
+     * clients overlap when asking for more instances than there are.
+     */
+    private void addInstances(final int namespaceIndex, final String prefix, final int count, final int total) {
+        for (int i = 0; i < Math.min(count, total); i++) {
+            var name = String.format("%s%06d", prefix, (this.index * count + i) % total);
+            for (var t : TestNamespace.SINGLE_TYPES) {
+                addItem(new NodeId(namespaceIndex, "OMP/" + prefix + "/" + name + "/" + t.getName()));
+            }
+        }
+    }
+
+    private void addDevices(final int namespaceIndex, final int count, final int total) {
+        for (int i = 0; i < Math.min(count, total); i++) {
+            var name = String.format("Device %04d", (this.index * count + i) % total);
+            for (var variable : DEVICE_VARIABLES) {
+                addItem(new NodeId(namespaceIndex, "OMP/Simulation/" + name + "/" + variable));
+            }
+        }
+    }
+
+    private void addStormItems(final int namespaceIndex, final String profile, final int count, final int total) {
+        for (int i = 0; i < Math.min(count, total); i++) {
+            var name = String.format("Item%06d", (this.index * count + i) % total);
+            addItem(new NodeId(namespaceIndex, "OMP/Storm/" + profile + "/" + name));
+        }
+    }
+
+    private void addItem(final NodeId nodeId) {
+        this.items.add(new ReadValueId(nodeId, AttributeId.Value.uid(), null, QualifiedName.NULL_VALUE));
+    }
+
+    int getItemCount() {
+        return this.items.size();
+    }
+
+    /**
+     * Create the subscription, and start reading, if enabled.
+     *
+     * @return The number of monitored items which could not be created.
+     */
+    int start() throws Exception {
+        var subscription = this.client.getSubscriptionManager()
+                .createSubscription(this.options.publishingInterval)
+                .get();
+
+        var failed = 0;
+        for (int i = 0; i < this.items.size(); i += BATCH_SIZE) {
+            var requests = new ArrayList<MonitoredItemCreateRequest>();
+            for (var item : this.items.subList(i, Math.min(i + BATCH_SIZE, this.items.size()))) {
+                requests.add(createRequest(subscription, item));
+            }
+            var created = subscription.createMonitoredItems(
+                    TimestampsToReturn.Both,
+                    requests,
+                    (item, id) -> item.setValueConsumer(this::onValue)
+            ).get();
+            for (var item : created) {
+                if (!item.getStatusCode().isGood()) {
+                    failed++;
+                }
+            }
+        }
+
+        if (this.options.readBatch > 0) {
+            this.running = true;
+            this.reader = new Thread(this::readLoop, "load-test-reader-" + this.index);
+            this.reader.setDaemon(true);
+            this.reader.start();
+        }
+
+        return failed;
+    }
+
+    private MonitoredItemCreateRequest createRequest(final UaSubscription subscription, final ReadValueId item) {
+        var parameters = new MonitoringParameters(
+                subscription.nextClientHandle(),
+                this.options.samplingInterval,
+                null,
+                uint(this.options.queueSize),
+                true
+        );
+        return new MonitoredItemCreateRequest(item, MonitoringMode.Reporting, parameters);
+    }
+
+    private void onValue(final DataValue value) {
+        this.notifications.increment();
+        var serverTime = value.getServerTime();
+        if (serverTime != null && !serverTime.isNull()) {
+            this.latency.record(micros(Instant.now()) - micros(serverTime.getJavaInstant()));
+        }
+    }
+
+    private static long micros(final Instant instant) {
+        return TimeUnit.SECONDS.toMicros(instant.getEpochSecond()) + instant.getNano() / 1_000;
+    }
+
+    private void readLoop() {
+        var batch = this.options.readBatch;
+        var offset = 0;
+        while (this.running) {
+            var end = Math.min(offset + batch, this.items.size());
+            try {
+                var response = this.client.read(0, TimestampsToReturn.Both, this.items.subList(offset, end)).get();
+                this.reads.add(response.getResults().length);
+            } catch (Exception e) {
+                if (this.running) {
+                    System.err.println("Failed to read: " + e);
+                }
+            }
+            offset = end < this.items.size() ? end : 0;
+        }
+    }
+
+    void stop() throws Exception {
+        this.running = false;
+        if (this.reader != null) {
+            this.reader.join();
+        }
+        if (this.client != null) {
+            this.client.disconnect().get();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.omp.opcua.test.server;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.omp.opcua.test.server.simulation.Deadband;
+import org.omp.opcua.test.server.simulation.DeviceModel;
+import org.omp.opcua.test.server.simulation.SimulationConfiguration;
+import org.omp.opcua.test.server.storm.StormConfiguration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.runtime.configuration.DurationConverter;
+import io.quarkus.runtime.configuration.HyphenateEnumConverter;
+import io.smallrye.config.SmallRyeConfigBuilder;
+import io.smallrye.config.source.yaml.YamlConfigSource;
+
+/**
+ * End-to-end load test: starts the {@link Server} on localhost, connects a number of clients, each subscribing to a
+ * slice of the {@code OMP/Single}, {@code OMP/Array}, {@code OMP/Simulation} and {@code OMP/Storm} trees, and reports
+ * the achieved notification rate, notification latency, CPU and heap usage.
+ * <p>
+ * The server is configured from its {@code application.yaml}, overridden by system properties, e.g.
+ * {@code -Domp.opcua.milo.test.numberOfSimple=10000}. The load is configured using the {@code load.*} system
+ * properties, see {@link Options}.
+ * <p>
+ * Server and clients share the JVM, so CPU and heap usage include both sides. Results are written to stdout.
+ */
+public class LoadTest {
+
+    private static final double[] PERCENTILES = new double[]{50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = new String[]{"p50", "p90", "p99", "p99.9"};
+
+    /**
+     * Load test options, from {@code load.*} system properties.
+     */
+    static final class Options {
+        /**
+         * Number of clients.
+         */
+        final int clients = Integer.getInteger("load.clients", 4);
+        /**
+         * Instances of {@code OMP/Single}, {@code OMP/Array} and devices of {@code OMP/Simulation} monitored per
+         * client. Each instance contributes one item per type, or per device variable.
+         */
+        final int singles = Integer.getInteger("load.singles", 250);
+        final int arrays = Integer.getInteger("load.arrays", 25);
+        final int devices = Integer.getInteger("load.devices", 10);
+        /**
+         * Items of the {@code OMP/Storm/<stormProfile>} storm monitored per client, the first profile if not set.
+         */
+        final int storm = Integer.getInteger("load.storm", 0);
+        String stormProfile = System.getProperty("load.stormProfile");
+        /**
+         * Publishing and sampling interval, in milliseconds.
+         */
+        final double publishingInterval = Double.parseDouble(System.getProperty("load.publishingInterval", "1000"));
+        final double samplingInterval = Double.parseDouble(System.getProperty("load.samplingInterval", "1000"));
+        final int queueSize = Integer.getInteger("load.queueSize", 1);
+        /**
+         * Number of items per read request, of a reader thread per client. Zero disables reading.
+         */
+        final int readBatch = Integer.getInteger("load.readBatch", 0);
+
+        final Duration warmup = duration("load.warmup", "10s");
+        final Duration duration = duration("load.duration", "60s");
+        final Duration reportInterval = duration("load.reportInterval", "5s");
+
+        int numberOfSimple;
+        int numberOfArray;
+        int numberOfDevices;
+        int numberOfStormItems;
+
+        private static Duration duration(final String name, final String defaultValue) {
+            return DurationConverter.parseDuration(System.getProperty(name, defaultValue));
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        var options = new Options();
+
+        // same JVM, so we can compare server and client timestamps at a sub-millisecond resolution
+        DateTime.USE_NANOS = true;
+
+        var server = createServer(options);
+
+        var notifications = new LongAdder();
+        var reads = new LongAdder();
+        var latency = new LatencyHistogram();
+
+        var clients = new ArrayList<LoadClient>();
+        try {
+            var start = System.nanoTime();
+            server.run();
+            System.out.format("Server ready in %d ms%n", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+            var endpointUrl = String.format("opc.tcp://localhost:%s/milo", server.tcpBindPort);
+            var items = 0;
+            var failed = 0;
+            for (int i = 0; i < options.clients; i++) {
+                var client = new LoadClient(i, options, notifications, reads, latency);
+                clients.add(client);
+                client.connect(endpointUrl);
+                failed += client.start();
+                items += client.getItemCount();
+            }
+            System.out.format("Connected %d clients, monitoring %d items (%d failed)%n", clients.size(), items, failed);
+
+            run(options, notifications, reads, latency);
+        } finally {
+            for (var client : clients) {
+                try {
+                    client.stop();
+                } catch (Exception e) {
+                    System.err.println("Failed to stop client: " + e);
+                }
+            }
+            server.stop();
+        }
+
+        System.exit(0);
+    }
+
+    private static Server createServer(final Options options) throws Exception {
+        var config = new SmallRyeConfigBuilder()
+                .addDefaultSources()
+                .addDefaultInterceptors()
+                .withSources(new YamlConfigSource(Server.class.getResource("/application.yaml")))
+                .withConverter(Duration.class, 200, new DurationConverter())
+                .withConverter(SimulationConfiguration.Engine.class, 200, new HyphenateEnumConverter<>(SimulationConfiguration.Engine.class))
+                .withConverter(SimulationConfiguration.Notifications.class, 200, new HyphenateEnumConverter<>(SimulationConfiguration.Notifications.class))
+                .withConverter(SimulationConfiguration.Writes.class, 200, new HyphenateEnumConverter<>(SimulationConfiguration.Writes.class))
+                .withConverter(SimulationConfiguration.Pacing.class, 200, new HyphenateEnumConverter<>(SimulationConfiguration.Pacing.class))
+                .withConverter(Deadband.Type.class, 200, new HyphenateEnumConverter<>(Deadband.Type.class))
+                .withConverter(DeviceModel.Type.class, 200, new HyphenateEnumConverter<>(DeviceModel.Type.class))
+                .withConverter(DeviceModel.Access.class, 200, new HyphenateEnumConverter<>(DeviceModel.Access.class))
+                .withConverter(ExecutionConfiguration.Mode.class, 200, new HyphenateEnumConverter<>(ExecutionConfiguration.Mode.class))
+                .withConverter(StormConfiguration.PayloadType.class, 200, new HyphenateEnumConverter<>(StormConfiguration.PayloadType.class))
+                .withMapping(TestConfiguration.class)
+                .withMapping(SimulationConfiguration.class)
+                .withMapping(StormConfiguration.class)
+                .withMapping(ShardConfiguration.class)
+                .withMapping(ExecutionConfiguration.class)
+                .build();
+
+        var server = new Server();
+        server.tcpBindPort = config.getOptionalValue("omp.opcua.milo.server.tcp.port", Integer.class).orElse(12686);
+        // stay on the loopback interface
+        server.tcpBindAddress = config.getOptionalValue("omp.opcua.milo.server.tcp.address", String.class).orElse("localhost");
+        server.discoveryHostname = Optional.of(config.getOptionalValue("omp.opcua.milo.server.discovery.hostname", String.class).orElse("localhost"));
+        server.securityDirectory = Path.of(config.getValue("omp.opcua.milo.server.securityDirectory", String.class));
+        server.httpsSelfSigned = true;
+        server.tlsKey = Optional.empty();
+        server.tlsCrt = Optional.empty();
+        server.enableAnonymous = false;
+        server.maxChunkSize = config.getValue("omp.opcua.milo.server.encoding.maxChunkSize", Integer.class);
+        server.maxChunkCount = config.getValue("omp.opcua.milo.server.encoding.maxChunkCount", Integer.class);
+        server.maxMessageSize = config.getValue("omp.opcua.milo.server.encoding.maxMessageSize", Integer.class);
+        server.configuration = config.getConfigMapping(TestConfiguration.class);
+        server.simulationConfiguration = config.getConfigMapping(SimulationConfiguration.class);
+        server.stormConfiguration = config.getConfigMapping(StormConfiguration.class);
+        server.shardConfiguration = config.getConfigMapping(ShardConfiguration.class);
+        server.executionConfiguration = config.getConfigMapping(ExecutionConfiguration.class);
+        server.registry = new SimpleMeterRegistry();
+
+        options.numberOfSimple = server.configuration.numberOfSimple();
+        options.numberOfArray = server.configuration.numberOfArray();
+        options.numberOfDevices = server.simulationConfiguration.numberOfDevices();
+
+        var profiles = server.stormConfiguration.profiles();
+        if (options.stormProfile == null && !profiles.isEmpty()) {
+            options.stormProfile = profiles.keySet().iterator().next();
+        }
+        var profile = options.stormProfile != null ? profiles.get(options.stormProfile) : null;
+        options.numberOfStormItems = profile != null ? profile.numberOfItems() : 0;
+
+        return server;
+    }
+
+    private static void run(final Options options, final LongAdder notifications, final LongAdder reads, final LatencyHistogram latency) throws InterruptedException {
+        System.out.format("Warming up for %s%n", options.warmup);
+        Thread.sleep(options.warmup.toMillis());
+
+        var total = new LatencyHistogram.Snapshot();
+        var start = Sample.take(notifications, reads, latency);
+        var last = start;
+
+        var end = start.nanos + options.duration.toNanos();
+        while (last.nanos < end) {
+            Thread.sleep(Math.min(options.reportInterval.toMillis(), Math.max(1, (end - last.nanos) / 1_000_000)));
+            var current = Sample.take(notifications, reads, latency);
+            total.add(current.latency);
+            report(String.format("%6.1fs", (current.nanos - start.nanos) / 1e9), last, current, current.latency);
+            last = current;
+        }
+
+        report("total", start, last, total);
+    }
+
+    private static void report(final String label, final Sample from, final Sample to, final LatencyHistogram.Snapshot latency) {
+        var seconds = (to.nanos - from.nanos) / 1e9;
+        var cpus = Runtime.getRuntime().availableProcessors();
+
+        var percentiles = new StringBuilder();
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            percentiles.append(String.format("%s=%.2f ", PERCENTILE_NAMES[i], latency.percentile(PERCENTILES[i]) / 1e3));
+        }
+
+        System.out.format("[%s] notifications/s=%.0f reads/s=%.0f latency(ms): %smax=%.2f cpu=%.1f%% heap=%dMiB gc=%dms%n",
+                label,
+                (to.notifications - from.notifications) / seconds,
+                (to.reads - from.reads) / seconds,
+                percentiles,
+                latency.max() / 1e3,
+                100.0 * (to.cpuNanos - from.cpuNanos) / (to.nanos - from.nanos) / cpus,
+                to.heapUsed / (1024 * 1024),
+                to.gcMillis - from.gcMillis);
+    }
+
+    private static final class Sample {
+        final long nanos;
+        final long notifications;
+        final long reads;
+        final long cpuNanos;
+        final long heapUsed;
+        final long gcMillis;
+        final LatencyHistogram.Snapshot latency;
+
+        private Sample(final long nanos, final long notifications, final long reads, final long cpuNanos, final long heapUsed, final long gcMillis, final LatencyHistogram.Snapshot latency) {
+            this.nanos = nanos;
+            this.notifications = notifications;
+            this.reads = reads;
+            this.cpuNanos = cpuNanos;
+            this.heapUsed = heapUsed;
+            this.gcMillis = gcMillis;
+            this.latency = latency;
+        }
+
+        static Sample take(final LongAdder notifications, final LongAdder reads, final LatencyHistogram latency) {
+            var os = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+            long gcMillis = 0;
+            for (var collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcMillis += Math.max(0, collector.getCollectionTime());
+            }
+            return new Sample(
+                    System.nanoTime(),
+                    notifications.sum(),
+                    reads.sum(),
+                    os.getProcessCpuTime(),
+                    ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(),
+                    gcMillis,
+                    latency.drain());
+        }
+    }
+}
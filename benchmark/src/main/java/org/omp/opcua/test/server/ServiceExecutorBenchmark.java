@@ -0,0 +1,91 @@
+package org.omp.opcua.test.server;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.nodes.AttributeContext;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilters;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The time to handle a burst of concurrent requests, like those of many sessions, on platform and on virtual threads.
+ * Each request reads a node through its filter chain, which may block for a while, like a value from a slow source.
+ * The {@code virtual} mode requires Java 21.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceExecutorBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    /**
+     * Concurrent requests per burst.
+     */
+    @Param({"1000", "10000"})
+    public int requests;
+
+    /**
+     * The time a read blocks, in microseconds.
+     */
+    @Param({"0", "1000"})
+    public int blockMicros;
+
+    private ServiceExecutor executor;
+    private AttributeContext context;
+    private UaVariableNode node;
+
+    @Setup
+    public void setup() {
+        this.executor = ServiceExecutor.create(ExecutionConfiguration.Mode.valueOf(this.mode.toUpperCase()), Runtime.getRuntime().availableProcessors());
+        this.context = new AttributeContext((OpcUaServer) null);
+
+        var blockNanos = TimeUnit.MICROSECONDS.toNanos(this.blockMicros);
+        var value = new DataValue(new Variant(42.0));
+        this.node = AttributeReadBenchmark.createNode(AttributeReadBenchmark.createNodeContext(), "blocking");
+        this.node.getFilterChain().addLast(AttributeFilters.getValue(ctx -> {
+            if (blockNanos > 0) {
+                LockSupport.parkNanos(blockNanos);
+            }
+            return value;
+        }));
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.executor.close();
+    }
+
+    @Benchmark
+    public void burst() throws InterruptedException {
+        var done = new CountDownLatch(this.requests);
+        for (int i = 0; i < this.requests; i++) {
+            this.executor.execute(() -> {
+                this.node.getAttribute(this.context, AttributeId.Value);
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,73 @@
+package org.omp.opcua.test.server;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Value generation of the {@link TestNamespace} test types.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TestTypeBenchmark {
+
+    @Param({"Int64", "Float", "Boolean"})
+    String type;
+
+    @Param({"100"})
+    int arraySize;
+
+    private TestNamespace.TestType testType;
+    private RandomSource random;
+
+    @Setup
+    public void setup() {
+        for (var t : TestNamespace.SINGLE_TYPES) {
+            if (t.getName().equals(this.type)) {
+                this.testType = t;
+            }
+        }
+        if (this.testType == null) {
+            throw new IllegalArgumentException("Unknown type: " + this.type);
+        }
+        this.random = new RandomSource(42);
+    }
+
+    @Benchmark
+    public DataValue next() {
+        return this.testType.next(this.random);
+    }
+
+    @Benchmark
+    public DataValue nextArray() {
+        return this.testType.nextArray(this.random, this.arraySize);
+    }
+
+    @Benchmark
+    public DataValue nextPrimitiveArray() {
+        return this.testType.nextPrimitiveArray(this.random, this.arraySize);
+    }
+
+    /**
+     * A square matrix of {@code arraySize} by {@code arraySize} elements, as nested primitive arrays.
+     */
+    @Benchmark
+    public DataValue nextPrimitiveMatrix() {
+        return this.testType.nextArray(this.random, new int[]{this.arraySize, this.arraySize}, true);
+    }
+}
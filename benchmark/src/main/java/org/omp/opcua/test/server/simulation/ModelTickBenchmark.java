@@ -0,0 +1,91 @@
+package org.omp.opcua.test.server.simulation;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.omp.opcua.test.server.RandomSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.quarkus.runtime.configuration.DurationConverter;
+import io.quarkus.runtime.configuration.HyphenateEnumConverter;
+import io.smallrye.config.SmallRyeConfigBuilder;
+import io.smallrye.config.source.yaml.YamlConfigSource;
+
+/**
+ * A tick of a fleet of a compiled {@link DeviceModel}, similar to {@link Device1}. Compare with the {@code COLUMNAR}
+ * engine of the {@link TickBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelTickBenchmark {
+
+    private static final String MODEL = String.join("\n",
+            "omp:",
+            "  opcua:",
+            "    milo:",
+            "      simulation:",
+            "        numberOfDevices: 0",
+            "        models:",
+            "          Device1:",
+            "            variables:",
+            "              - name: ambientTemperatureSetpoint",
+            "                access: read-write",
+            "                initial: 15",
+            "              - name: active",
+            "                type: boolean",
+            "                access: read-write",
+            "                initial: 'true'",
+            "              - name: ambientTemperature",
+            "                initial: 15",
+            "                update: ambientTemperatureSetpoint + gaussian(0, 0.1)",
+            "              - name: powerConsumption",
+            "                update: 'active ? gaussian(1000, 100) : 0'",
+            "              - name: temperature",
+            "                initial: 15",
+            "                update: 'ambientTemperature + (temperature - ambientTemperature) * 0.9 + (active ? 2 : 0)'",
+            "");
+
+    @Param({"10", "1000", "100000"})
+    int devices;
+
+    private ModelFleet fleet;
+
+    @Setup
+    public void setup() {
+        var configuration = new SmallRyeConfigBuilder()
+                .withSources(new YamlConfigSource("model", MODEL))
+                .withConverter(Duration.class, 200, new DurationConverter())
+                .withConverter(SimulationConfiguration.Engine.class, 200, new HyphenateEnumConverter<>(SimulationConfiguration.Engine.class))
+                .withConverter(SimulationConfiguration.Notifications.class, 200, new HyphenateEnumConverter<>(SimulationConfiguration.Notifications.class))
+                .withConverter(SimulationConfiguration.Writes.class, 200, new HyphenateEnumConverter<>(SimulationConfiguration.Writes.class))
+                .withConverter(SimulationConfiguration.Pacing.class, 200, new HyphenateEnumConverter<>(SimulationConfiguration.Pacing.class))
+                .withConverter(Deadband.Type.class, 200, new HyphenateEnumConverter<>(Deadband.Type.class))
+                .withConverter(DeviceModel.Type.class, 200, new HyphenateEnumConverter<>(DeviceModel.Type.class))
+                .withConverter(DeviceModel.Access.class, 200, new HyphenateEnumConverter<>(DeviceModel.Access.class))
+                .withMapping(SimulationConfiguration.class)
+                .build()
+                .getConfigMapping(SimulationConfiguration.class);
+
+        var model = DeviceModel.compile("Device1", configuration.models().get("Device1"), Duration.ofSeconds(1));
+        this.fleet = new ModelFleet(model, this.devices, new RandomSource(42));
+    }
+
+    @Benchmark
+    public void tick() {
+        this.fleet.tick();
+    }
+}
@@ -0,0 +1,61 @@
+package org.omp.opcua.test.server.simulation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.omp.opcua.test.server.RandomSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hot paths of a single simulated device.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulationBenchmark {
+
+    private Device1 device;
+    private SmoothJitter jitter;
+    private Value<Double> value;
+    private double next;
+
+    @Setup
+    public void setup() {
+        this.device = new Device1(new RandomSource(42));
+        this.jitter = new SmoothJitter(new RandomSource(42), 30, 0.5);
+        this.value = new Value<>(0.0);
+    }
+
+    @Benchmark
+    public void deviceTick() {
+        this.device.tick();
+    }
+
+    @Benchmark
+    public double smoothJitterNext() {
+        return this.jitter.next();
+    }
+
+    @Benchmark
+    public DataValue valueAsDataValue() {
+        return this.value.asDataValue();
+    }
+
+    @Benchmark
+    public DataValue valueSetValue() {
+        this.value.setValue(this.next++);
+        return this.value.asDataValue();
+    }
+}
@@ -0,0 +1,104 @@
+package org.omp.opcua.test.server.simulation;
+
+import java.time.Duration;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+
+import org.omp.opcua.test.server.RandomSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A full simulation tick, as run by the {@link SimulationNamespace}, for different fleet sizes and engines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TickBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    int devices;
+
+    @Param({"OBJECT", "COLUMNAR"})
+    SimulationConfiguration.Engine engine;
+
+    @Param({"1", "4"})
+    int parallelism;
+
+    private TickScheduler scheduler;
+
+    @Setup
+    public void setup() {
+        var random = new RandomSource(42);
+        var fleet = this.engine == SimulationConfiguration.Engine.COLUMNAR
+                ? new ColumnarDeviceFleet(this.devices, random)
+                : new ObjectDeviceFleet(this.devices, random);
+
+        this.scheduler = new TickScheduler("benchmark", new SimulationConfiguration.Tick() {
+            @Override
+            public Duration period() {
+                return Duration.ofSeconds(1);
+            }
+
+            @Override
+            public double timeScale() {
+                return 1;
+            }
+
+            @Override
+            public SimulationConfiguration.Pacing pacing() {
+                return SimulationConfiguration.Pacing.SCALED;
+            }
+
+            @Override
+            public int fastForward() {
+                return 0;
+            }
+
+            @Override
+            public boolean onDemand() {
+                return false;
+            }
+
+            @Override
+            public int maxCatchUp() {
+                return 0;
+            }
+
+            @Override
+            public OptionalInt parallelism() {
+                return OptionalInt.of(TickBenchmark.this.parallelism);
+            }
+
+            @Override
+            public int minShardSize() {
+                return 1000;
+            }
+        });
+        // attach only, the benchmark drives the ticks
+        this.scheduler.attach(fleet);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.scheduler.stop();
+    }
+
+    @Benchmark
+    public void tick() {
+        this.scheduler.tick();
+    }
+}
@@ -0,0 +1,36 @@
+package org.omp.opcua.test.server;
+
+import java.util.OptionalInt;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Where the test and simulation namespaces handle Read, Write and Browse requests, see {@link ServiceExecutor}.
+ */
+@ConfigMapping(prefix = "omp.opcua.milo.execution", namingStrategy = ConfigMapping.NamingStrategy.VERBATIM)
+public interface ExecutionConfiguration {
+    @WithDefault("inline")
+    Mode mode();
+
+    /**
+     * The number of platform threads, or the number of carrier threads of virtual threads. Defaults to the number of
+     * available processors.
+     */
+    OptionalInt parallelism();
+
+    enum Mode {
+        /**
+         * On the threads of Milo, which call the namespace.
+         */
+        INLINE,
+        /**
+         * On a fixed pool of platform threads.
+         */
+        PLATFORM,
+        /**
+         * On a new virtual thread per request, requires Java 21.
+         */
+        VIRTUAL,
+    }
+}
@@ -0,0 +1,205 @@
+package org.omp.opcua.test.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.milo.opcua.sdk.core.NumericRange;
+import org.eclipse.milo.opcua.sdk.server.api.NodeManager;
+import org.eclipse.milo.opcua.sdk.server.api.services.AttributeServices.ReadContext;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilter;
+import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilterContext;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+
+/**
+ * Reads of generated arrays with an index range, which only generate the elements in the range.
+ * <p>
+ * Milo reads the full value through the filter chain, and slices it afterwards. The elements of the generated arrays
+ * are independent random values, so generating an array of the shape of the slice is just as good, and only costs
+ * the slice. Everything else, including ranges which don't match the dimensions of the value, gets read by Milo.
+ * <p>
+ * Sliced reads skip the user access level check of Milo, test variables are readable by everyone.
+ */
+final class IndexRangeReads {
+
+    interface Delegate {
+        void read(ReadContext context, Double maxAge, TimestampsToReturn timestamps, List<ReadValueId> readValueIds);
+    }
+
+    /**
+     * The value of an array variable. Generates the full array when read through the filter chain.
+     */
+    static final class ArrayValue implements AttributeFilter {
+
+        private final TestNamespace.TestType type;
+        private final RandomSource random;
+        private final int[] shape;
+        private final boolean primitive;
+
+        ArrayValue(final TestNamespace.TestType type, final RandomSource random, final int[] shape, final boolean primitive) {
+            this.type = type;
+            this.random = random;
+            this.shape = shape;
+            this.primitive = primitive;
+        }
+
+        @Override
+        public Object getAttribute(final AttributeFilterContext.GetAttributeContext ctx, final AttributeId attributeId) {
+            if (attributeId == AttributeId.Value) {
+                return generate(this.shape);
+            }
+            return ctx.getAttribute(attributeId);
+        }
+
+        DataValue generate(final int[] shape) {
+            // random sources aren't thread-safe, but are per node, so this lock is hardly ever contended
+            synchronized (this.random) {
+                return this.type.nextArray(this.random, shape, this.primitive);
+            }
+        }
+
+        /**
+         * The shape of a range of the value, or {@code null} if the range has a different number of dimensions.
+         *
+         * @throws UaException {@code Bad_IndexRangeNoData} if the range starts beyond the value.
+         */
+        int[] slice(final NumericRange range) throws UaException {
+            var bounds = range.getBounds();
+            if (bounds.length != this.shape.length) {
+                return null;
+            }
+
+            var result = new int[bounds.length];
+            for (int i = 0; i < bounds.length; i++) {
+                var low = bounds[i].getLow();
+                if (low >= this.shape[i]) {
+                    throw new UaException(StatusCodes.Bad_IndexRangeNoData);
+                }
+                result[i] = Math.min(bounds[i].getHigh(), this.shape[i] - 1) - low + 1;
+            }
+            return result;
+        }
+    }
+
+    private IndexRangeReads() {
+    }
+
+    /**
+     * Read values, slicing the arrays with an index range, and delegating all other reads.
+     */
+    static void read(
+            final NodeManager<UaNode> nodeManager,
+            final NamespaceMetrics metrics,
+            final ReadContext context,
+            final Double maxAge,
+            final TimestampsToReturn timestamps,
+            final List<ReadValueId> readValueIds,
+            final Delegate delegate) {
+
+        DataValue[] values = null;
+        var remaining = 0;
+        for (int i = 0; i < readValueIds.size(); i++) {
+            var value = readSlice(nodeManager, metrics, readValueIds.get(i), timestamps);
+            if (value != null) {
+                if (values == null) {
+                    values = new DataValue[readValueIds.size()];
+                    remaining = i;
+                }
+                values[i] = value;
+            } else if (values != null) {
+                remaining++;
+            }
+        }
+
+        if (values == null) {
+            delegate.read(context, maxAge, timestamps, readValueIds);
+            return;
+        }
+        if (remaining == 0) {
+            context.success(Arrays.asList(values));
+            return;
+        }
+
+        var others = new ArrayList<ReadValueId>(remaining);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                others.add(readValueIds.get(i));
+            }
+        }
+
+        var result = values;
+        var othersContext = new ReadContext(context.getServer(), context.getSession().orElse(null));
+        othersContext.getFuture().whenComplete((read, failure) -> {
+            if (failure != null) {
+                context.failure(UaException.extractStatusCode(failure).orElse(new StatusCode(StatusCodes.Bad_InternalError)));
+                return;
+            }
+            var next = 0;
+            for (int i = 0; i < result.length; i++) {
+                if (result[i] == null) {
+                    result[i] = read.get(next++);
+                }
+            }
+            context.success(Arrays.asList(result));
+        });
+
+        delegate.read(othersContext, maxAge, timestamps, others);
+    }
+
+    private static DataValue readSlice(
+            final NodeManager<UaNode> nodeManager,
+            final NamespaceMetrics metrics,
+            final ReadValueId readValueId,
+            final TimestampsToReturn timestamps) {
+
+        var indexRange = readValueId.getIndexRange();
+        if (indexRange == null || indexRange.isEmpty()
+                || !AttributeId.Value.isEqual(readValueId.getAttributeId())
+                || (readValueId.getDataEncoding() != null && readValueId.getDataEncoding().isNotNull())) {
+            return null;
+        }
+
+        var value = arrayValue(nodeManager.get(readValueId.getNodeId()));
+        if (value == null) {
+            return null;
+        }
+
+        int[] shape;
+        try {
+            shape = value.slice(NumericRange.parse(indexRange));
+        } catch (UaException e) {
+            // let Milo report invalid ranges
+            return e.getStatusCode().getValue() == StatusCodes.Bad_IndexRangeNoData ? new DataValue(e.getStatusCode()) : null;
+        }
+        if (shape == null) {
+            return null;
+        }
+
+        var start = System.nanoTime();
+        try {
+            return DataValue.derivedValue(value.generate(shape), timestamps);
+        } finally {
+            metrics.recordRead(System.nanoTime() - start);
+        }
+    }
+
+    private static ArrayValue arrayValue(final UaNode node) {
+        if (!(node instanceof UaVariableNode)) {
+            return null;
+        }
+        for (var filter : ((UaVariableNode) node).getFilterChain().getFilters()) {
+            if (filter instanceof ArrayValue) {
+                return (ArrayValue) filter;
+            }
+        }
+        return null;
+    }
+}
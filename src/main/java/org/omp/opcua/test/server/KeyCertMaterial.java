@@ -1,25 +1,62 @@
 package org.omp.opcua.test.server;
 
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.security.KeyPair;
 import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import org.eclipse.milo.opcua.stack.core.util.CertificateUtil;
 import org.eclipse.milo.opcua.stack.core.util.SelfSignedCertificateBuilder;
 import org.eclipse.milo.opcua.stack.core.util.SelfSignedCertificateGenerator;
+import org.eclipse.milo.opcua.stack.core.util.SelfSignedHttpsCertificateBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.net.InetAddresses;
 
 public final class KeyCertMaterial {
 
+    private static final Logger LOG = LoggerFactory.getLogger(KeyCertMaterial.class);
+
+    private static final String CACHE_TYPE = "PKCS12";
+    private static final String CACHE_ALIAS = "material";
+    // only protects against accidental use, the security directory must be private anyway
+    private static final char[] CACHE_PASSWORD = "omp-milo-test-server".toCharArray();
+
+    /**
+     * Cached material expiring within this period gets re-created.
+     */
+    private static final Duration MIN_REMAINING_VALIDITY = Duration.ofDays(7);
+
     private final Material material;
 
+    @FunctionalInterface
+    public interface Generator {
+        /**
+         * Generate new key-cert material.
+         *
+         * @param stale The previously cached material, if there was any.
+         * @return The new material.
+         * @throws Exception If anything goes wrong.
+         */
+        KeyCertMaterial generate(Optional<KeyCertMaterial> stale) throws Exception;
+    }
+
     private static class Material {
         private final X509Certificate[] certificateChain;
         private final KeyPair keyPair;
@@ -42,6 +79,119 @@ public final class KeyCertMaterial {
         return this.material.keyPair;
     }
 
+    /**
+     * Get the application URI of the server certificate.
+     */
+    public Optional<String> getApplicationUri() {
+        return CertificateUtil.getSanUri(this.material.certificateChain[0]);
+    }
+
+    /**
+     * Check if the material can still be used.
+     * <p>
+     * IP addresses get ignored: a pod gets a new one with every restart, which would re-create the material each time.
+     *
+     * @param hostnames The hostnames the certificate must contain.
+     * @param applicationUri The application URI the certificate must have, if any.
+     * @return {@code true} if the certificate is valid for at least {@link #MIN_REMAINING_VALIDITY}, for all
+     *         hostnames, and has the application URI.
+     */
+    @SuppressWarnings("UnstableApiUsage")
+    public boolean isValidFor(final Set<String> hostnames, final Optional<String> applicationUri) {
+        var certificate = this.material.certificateChain[0];
+        try {
+            certificate.checkValidity(Date.from(Instant.now().plus(MIN_REMAINING_VALIDITY)));
+        } catch (Exception e) {
+            return false;
+        }
+        if (applicationUri.isPresent() && !applicationUri.equals(getApplicationUri())) {
+            return false;
+        }
+
+        var names = new HashSet<>(CertificateUtil.getSanDnsNames(certificate));
+        for (var hostname : hostnames) {
+            if (!InetAddresses.isInetAddress(hostname) && !names.contains(hostname)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Load key-cert material from a cache file, or generate (and store) new material if the cache file is missing, or
+     * its material is not {@link #isValidFor(Set, Optional) valid}.
+     *
+     * @see #loadOrCreate(Path, Set, Optional, Generator)
+     */
+    public static CompletableFuture<KeyCertMaterial> loadOrCreate(final Path file, final Set<String> hostnames, final Generator generator) {
+        return loadOrCreate(file, hostnames, Optional.empty(), generator);
+    }
+
+    /**
+     * Load key-cert material from a cache file, or generate (and store) new material if the cache file is missing, or
+     * its material is not {@link #isValidFor(Set, Optional) valid}.
+     * <p>
+     * Material gets generated asynchronously, so that the caller can continue starting up in the meantime.
+     *
+     * @param file The cache file.
+     * @param hostnames The hostnames the material must be valid for.
+     * @param applicationUri The application URI the material must have, if any.
+     * @param generator The generator of new material.
+     * @return The future material.
+     */
+    public static CompletableFuture<KeyCertMaterial> loadOrCreate(final Path file, final Set<String> hostnames, final Optional<String> applicationUri,
+                                                                  final Generator generator) {
+
+        Optional<KeyCertMaterial> cached = Optional.empty();
+        if (Files.exists(file)) {
+            try {
+                cached = Optional.of(load(file, CACHE_TYPE, CACHE_PASSWORD, CACHE_ALIAS, CACHE_PASSWORD, CACHE_ALIAS));
+            } catch (Exception e) {
+                LOG.warn("Failed to load key material from {}, re-creating", file, e);
+            }
+        }
+
+        if (cached.isPresent() && cached.get().isValidFor(hostnames, applicationUri)) {
+            LOG.info("Using cached key material: {}", file);
+            return CompletableFuture.completedFuture(cached.get());
+        }
+
+        LOG.info("Creating key material: {} ({})", file, cached.isPresent() ? "stale" : "missing");
+
+        var stale = cached;
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                var result = generator.generate(stale);
+                result.store(file);
+                return result;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Store the material in a file, which can be read by {@link #loadOrCreate(Path, Set, Optional, Generator)}.
+     * <p>
+     * Failing to store the material only gets logged, as the material can still be used.
+     */
+    private void store(final Path file) {
+        try {
+            var keyStore = KeyStore.getInstance(CACHE_TYPE);
+            keyStore.load(null, null);
+            keyStore.setKeyEntry(CACHE_ALIAS, this.material.keyPair.getPrivate(), CACHE_PASSWORD, this.material.certificateChain);
+
+            // write and rename, so that a crash doesn't leave a broken file behind
+            var temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                keyStore.store(output, CACHE_PASSWORD);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            LOG.warn("Failed to store key material: {}", file, e);
+        }
+    }
+
     /**
      * Create new, self-signed key-cert material.
      *
@@ -49,12 +199,23 @@ public final class KeyCertMaterial {
      * @return The newly created, self-signed key material.
      * @throws Exception If anything goes wrong.
      */
-    @SuppressWarnings("UnstableApiUsage")
     public static KeyCertMaterial createSelfSigned(Set<String> hostnames) throws Exception {
+        return createSelfSigned(hostnames, "urn:omp:milo:tests:server:" + UUID.randomUUID());
+    }
+
+    /**
+     * Create new, self-signed key-cert material.
+     *
+     * @param hostnames The hostnames (and IP addresses to add).
+     * @param applicationUri The application URI of the server.
+     * @return The newly created, self-signed key material.
+     * @throws Exception If anything goes wrong.
+     */
+    @SuppressWarnings("UnstableApiUsage")
+    public static KeyCertMaterial createSelfSigned(Set<String> hostnames, String applicationUri) throws Exception {
 
         var keyPair = SelfSignedCertificateGenerator.generateRsaKeyPair(2048);
 
-        var applicationUri = "urn:omp:milo:tests:server:" + UUID.randomUUID();
         var builder = new SelfSignedCertificateBuilder(keyPair)
                 .setCommonName("OMP OPC UA Test Server")
                 .setOrganization("Red Hat, Inc")
@@ -75,6 +236,25 @@ public final class KeyCertMaterial {
         return new KeyCertMaterial(new Material(keyPair, new X509Certificate[]{builder.build()}));
     }
 
+    /**
+     * Create new, self-signed key-cert material for HTTPS.
+     *
+     * @param commonName The common name of the certificate.
+     * @param hostnames The hostnames to add.
+     * @return The newly created, self-signed key material.
+     * @throws Exception If anything goes wrong.
+     */
+    public static KeyCertMaterial createSelfSignedHttps(String commonName, Set<String> hostnames) throws Exception {
+
+        var keyPair = SelfSignedCertificateGenerator.generateRsaKeyPair(2048);
+
+        var builder = new SelfSignedHttpsCertificateBuilder(keyPair);
+        builder.setCommonName(commonName);
+        hostnames.forEach(builder::addDnsName);
+
+        return new KeyCertMaterial(new Material(keyPair, new X509Certificate[]{builder.build()}));
+    }
+
     /**
      * Load key material from a keystore.
      *
@@ -0,0 +1,365 @@
+package org.omp.opcua.test.server;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+
+import org.eclipse.milo.opcua.sdk.core.Reference;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.UaRuntimeException;
+import org.eclipse.milo.opcua.stack.core.serialization.UaRequestMessage;
+import org.eclipse.milo.opcua.stack.core.serialization.UaResponseMessage;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExpandedNodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.BrowseDirection;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.BrowseResultMask;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseNextRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseNextResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+import org.eclipse.milo.opcua.stack.server.services.ServiceRequest;
+import org.eclipse.milo.opcua.stack.server.services.ServiceRequestHandler;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+import static org.eclipse.milo.opcua.sdk.server.util.UaEnumUtil.browseResultMasks;
+import static org.eclipse.milo.opcua.sdk.server.util.UaEnumUtil.nodeClasses;
+
+/**
+ * Browsing the type folders of the lazy address space.
+ * <p>
+ * Milo describes every reference of a browsed node, by reading the attributes of its target, before it pages the
+ * descriptions into a continuation point. For a type folder, that would create each of its instance folders, and keep
+ * a description of each of them in the session. The Browse and BrowseNext requests of type folders get answered here
+ * instead, one page at a time, describing the instance folders without creating them. The continuation points hold
+ * the position in the references, so they don't take any memory on the server.
+ * <p>
+ * Everything else, including the validation of the session and the request, is still left to Milo.
+ */
+final class LazyBrowses {
+
+    /**
+     * The maximum number of references returned per type folder, if the client asks for more, or doesn't set a limit.
+     */
+    static final int MAX_REFERENCES_PER_NODE = 1000;
+
+    private static final int MAGIC = 0x4f4d5042;
+
+    private final OpcUaServer server;
+    private final LazyTestAddressSpace space;
+
+    private LazyBrowses(final OpcUaServer server, final LazyTestAddressSpace space) {
+        this.server = server;
+        this.space = space;
+    }
+
+    /**
+     * Answer the browses of the type folders of an address space, on all endpoints. Must be called before clients
+     * connect.
+     */
+    static void register(final OpcUaServer server, final LazyTestAddressSpace space) {
+        var browses = new LazyBrowses(server, space);
+        var stackServer = server.getStackServer();
+
+        var paths = new HashSet<String>();
+        for (var endpoint : server.getConfig().getEndpoints()) {
+            paths.add(endpoint.getPath());
+        }
+        for (var path : paths) {
+            var browse = stackServer.getServiceHandler(path, BrowseRequest.TYPE_ID);
+            if (browse != null) {
+                stackServer.addServiceHandler(path, BrowseRequest.TYPE_ID, request -> browses.browse(request, browse));
+            }
+            var browseNext = stackServer.getServiceHandler(path, BrowseNextRequest.TYPE_ID);
+            if (browseNext != null) {
+                stackServer.addServiceHandler(path, BrowseNextRequest.TYPE_ID, request -> browses.browseNext(request, browseNext));
+            }
+        }
+    }
+
+    private void browse(final ServiceRequest request, final ServiceRequestHandler handler) throws UaException {
+        var browseRequest = (BrowseRequest) request.getRequest();
+        var nodes = browseRequest.getNodesToBrowse();
+        if (nodes == null) {
+            handler.handle(request);
+            return;
+        }
+
+        var folders = new LazyTestAddressSpace.TypeFolderReferences[nodes.length];
+        var delegated = nodes.clone();
+        var found = false;
+        for (int i = 0; i < nodes.length; i++) {
+            folders[i] = nodes[i] != null && nodes[i].getNodeId() != null ? this.space.typeFolderReferences(nodes[i].getNodeId()) : null;
+            if (folders[i] != null) {
+                // Milo only answers that this node is unknown, the result gets replaced
+                delegated[i] = new BrowseDescription(NodeId.NULL_VALUE, nodes[i].getBrowseDirection(), nodes[i].getReferenceTypeId(),
+                        nodes[i].getIncludeSubtypes(), nodes[i].getNodeClassMask(), nodes[i].getResultMask());
+                found = true;
+            }
+        }
+        if (!found) {
+            handler.handle(request);
+            return;
+        }
+
+        var max = maxReferences(value(browseRequest.getRequestedMaxReferencesPerNode()));
+        delegate(request, handler, new BrowseRequest(browseRequest.getRequestHeader(), browseRequest.getView(),
+                browseRequest.getRequestedMaxReferencesPerNode(), delegated), response -> {
+            var browseResponse = (BrowseResponse) response;
+            var results = browseResponse.getResults().clone();
+            for (int i = 0; i < results.length; i++) {
+                if (folders[i] != null) {
+                    results[i] = page(folders[i], nodes[i], 0, max);
+                }
+            }
+            return new BrowseResponse(browseResponse.getResponseHeader(), results, browseResponse.getDiagnosticInfos());
+        });
+    }
+
+    private void browseNext(final ServiceRequest request, final ServiceRequestHandler handler) throws UaException {
+        var browseNextRequest = (BrowseNextRequest) request.getRequest();
+        var continuationPoints = browseNextRequest.getContinuationPoints();
+        if (continuationPoints == null) {
+            handler.handle(request);
+            return;
+        }
+
+        var positions = new Position[continuationPoints.length];
+        var found = false;
+        for (int i = 0; i < continuationPoints.length; i++) {
+            positions[i] = Position.decode(continuationPoints[i]);
+            found |= positions[i] != null;
+        }
+        if (!found) {
+            handler.handle(request);
+            return;
+        }
+
+        var release = Boolean.TRUE.equals(browseNextRequest.getReleaseContinuationPoints());
+        // Milo answers that the continuation points are invalid, the results get replaced
+        delegate(request, handler, browseNextRequest, response -> {
+            var browseNextResponse = (BrowseNextResponse) response;
+            var results = browseNextResponse.getResults().clone();
+            for (int i = 0; i < results.length; i++) {
+                if (positions[i] == null) {
+                    continue;
+                }
+                var folder = this.space.typeFolderReferences(positions[i].node.getNodeId());
+                if (folder == null) {
+                    results[i] = new BrowseResult(new StatusCode(StatusCodes.Bad_ContinuationPointInvalid), null, null);
+                } else if (release) {
+                    results[i] = new BrowseResult(StatusCode.GOOD, null, null);
+                } else {
+                    results[i] = page(folder, positions[i].node, positions[i].index, positions[i].max);
+                }
+            }
+            return new BrowseNextResponse(browseNextResponse.getResponseHeader(), results, browseNextResponse.getDiagnosticInfos());
+        });
+    }
+
+    private interface ResponseMapper {
+        UaResponseMessage map(UaResponseMessage response);
+    }
+
+    /**
+     * Pass a request to Milo, and map its response.
+     */
+    private static void delegate(final ServiceRequest request, final ServiceRequestHandler handler, final UaRequestMessage delegatedRequest,
+                                 final ResponseMapper mapper) throws UaException {
+        var delegated = new ServiceRequest(request.getServer(), delegatedRequest, request.getEndpoint(), request.getSecureChannelId(),
+                request.getClientAddress(), request.getClientCertificateBytes());
+        delegated.getFuture().whenComplete((response, failure) -> {
+            if (failure != null) {
+                var cause = failure instanceof UaException ? (UaException) failure : new UaException(StatusCodes.Bad_InternalError, failure);
+                request.setServiceFault(cause);
+            } else if (response instanceof BrowseResponse || response instanceof BrowseNextResponse) {
+                try {
+                    request.setResponse(mapper.map(response));
+                } catch (RuntimeException e) {
+                    request.setServiceFault(new UaException(StatusCodes.Bad_InternalError, e));
+                }
+            } else {
+                request.setResponse(response);
+            }
+        });
+        handler.handle(delegated);
+    }
+
+    private static long value(final UInteger value) {
+        return value != null ? value.longValue() : 0L;
+    }
+
+    private static int maxReferences(final long requested) {
+        return requested <= 0 || requested > MAX_REFERENCES_PER_NODE ? MAX_REFERENCES_PER_NODE : (int) requested;
+    }
+
+    /**
+     * A page of the references of a type folder.
+     */
+    private BrowseResult page(final LazyTestAddressSpace.TypeFolderReferences references, final BrowseDescription node, final int from, final int max) {
+        var size = references.size();
+        var stored = references.storedSize();
+        // the instance folder references only differ by their target, they either all match or none does
+        var instances = stored < size && matches(node, references.get(stored), NodeClass.Object);
+        var end = instances ? size : stored;
+        var masks = browseResultMasks(value(node.getResultMask()));
+
+        var descriptions = new ArrayList<ReferenceDescription>();
+        var index = from;
+        for (; index < end && descriptions.size() < max; index++) {
+            var reference = references.get(index);
+            if (index >= stored) {
+                descriptions.add(describe(reference, masks, NodeClass.Object, references.browseName(index), references.displayName(index),
+                        Identifiers.FolderType.expanded()));
+                continue;
+            }
+            var description = describeStored(node, reference, masks);
+            if (description != null) {
+                descriptions.add(description);
+            }
+        }
+        while (index < Math.min(stored, end) && describeStored(node, references.get(index), masks) == null) {
+            index++;
+        }
+
+        var continuationPoint = index < end ? new Position(node, index, max).encode() : null;
+        return new BrowseResult(StatusCode.GOOD, continuationPoint, descriptions.toArray(new ReferenceDescription[0]));
+    }
+
+    private ReferenceDescription describeStored(final BrowseDescription node, final Reference reference, final EnumSet<BrowseResultMask> masks) {
+        var addressSpace = this.server.getAddressSpaceManager();
+        var target = addressSpace.getManagedNode(reference.getTargetNodeId()).orElse(null);
+        var nodeClass = target != null ? target.getNodeClass() : NodeClass.Unspecified;
+        if (!matches(node, reference, nodeClass)) {
+            return null;
+        }
+        if (target == null) {
+            return describe(reference, masks, nodeClass, QualifiedName.NULL_VALUE, LocalizedText.NULL_VALUE, ExpandedNodeId.NULL_VALUE);
+        }
+
+        var typeDefinition = ExpandedNodeId.NULL_VALUE;
+        if (nodeClass == NodeClass.Object || nodeClass == NodeClass.Variable) {
+            typeDefinition = addressSpace
+                    .getManagedReferences(target.getNodeId(), r -> r.isForward() && Identifiers.HasTypeDefinition.equals(r.getReferenceTypeId()))
+                    .stream()
+                    .findFirst()
+                    .map(Reference::getTargetNodeId)
+                    .orElse(ExpandedNodeId.NULL_VALUE);
+        }
+        return describe(reference, masks, nodeClass, target.getBrowseName(), target.getDisplayName(), typeDefinition);
+    }
+
+    private boolean matches(final BrowseDescription node, final Reference reference, final NodeClass nodeClass) {
+        var direction = node.getBrowseDirection();
+        if (direction == BrowseDirection.Forward && !reference.isForward() || direction == BrowseDirection.Inverse && reference.isForward()) {
+            return false;
+        }
+
+        var referenceType = node.getReferenceTypeId();
+        if (referenceType != null && referenceType.isNotNull() && !referenceType.equals(reference.getReferenceTypeId())
+                && !(Boolean.TRUE.equals(node.getIncludeSubtypes()) && reference.subtypeOf(referenceType, this.server.getReferenceTypes()))) {
+            return false;
+        }
+
+        var nodeClassMask = value(node.getNodeClassMask());
+        return nodeClassMask == 0 || nodeClasses(nodeClassMask).contains(nodeClass);
+    }
+
+    private static ReferenceDescription describe(final Reference reference, final EnumSet<BrowseResultMask> masks, final NodeClass nodeClass,
+                                                 final QualifiedName browseName, final LocalizedText displayName, final ExpandedNodeId typeDefinition) {
+        return new ReferenceDescription(
+                masks.contains(BrowseResultMask.ReferenceTypeId) ? reference.getReferenceTypeId() : NodeId.NULL_VALUE,
+                masks.contains(BrowseResultMask.IsForward) && reference.isForward(),
+                reference.getTargetNodeId(),
+                masks.contains(BrowseResultMask.BrowseName) ? browseName : QualifiedName.NULL_VALUE,
+                masks.contains(BrowseResultMask.DisplayName) ? displayName : LocalizedText.NULL_VALUE,
+                masks.contains(BrowseResultMask.NodeClass) ? nodeClass : NodeClass.Unspecified,
+                masks.contains(BrowseResultMask.TypeDefinition) ? typeDefinition : ExpandedNodeId.NULL_VALUE
+        );
+    }
+
+    /**
+     * The content of a continuation point: the browse, and the position of the next reference.
+     */
+    private static final class Position {
+        final BrowseDescription node;
+        final int index;
+        final int max;
+
+        Position(final BrowseDescription node, final int index, final int max) {
+            this.node = node;
+            this.index = index;
+            this.max = max;
+        }
+
+        ByteString encode() {
+            var nodeId = this.node.getNodeId().toParseableString().getBytes(StandardCharsets.UTF_8);
+            var referenceType = this.node.getReferenceTypeId() != null
+                    ? this.node.getReferenceTypeId().toParseableString().getBytes(StandardCharsets.UTF_8)
+                    : new byte[0];
+            var buffer = ByteBuffer.allocate(4 * 6 + 1 + 8 * 2 + nodeId.length + referenceType.length)
+                    .putInt(MAGIC)
+                    .putInt(this.index)
+                    .putInt(this.max)
+                    .putInt(this.node.getBrowseDirection() != null ? this.node.getBrowseDirection().getValue() : BrowseDirection.Forward.getValue())
+                    .put((byte) (Boolean.TRUE.equals(this.node.getIncludeSubtypes()) ? 1 : 0))
+                    .putLong(value(this.node.getNodeClassMask()))
+                    .putLong(value(this.node.getResultMask()))
+                    .putInt(nodeId.length)
+                    .put(nodeId)
+                    .putInt(referenceType.length)
+                    .put(referenceType);
+            return ByteString.of(buffer.array());
+        }
+
+        /**
+         * @return The position, or {@code null} if this is not a continuation point of a type folder.
+         */
+        static Position decode(final ByteString continuationPoint) {
+            if (continuationPoint == null || continuationPoint.isNull() || continuationPoint.length() < 4) {
+                return null;
+            }
+            try {
+                var buffer = ByteBuffer.wrap(continuationPoint.bytesOrEmpty());
+                if (buffer.getInt() != MAGIC) {
+                    return null;
+                }
+                var index = buffer.getInt();
+                var max = buffer.getInt();
+                var direction = BrowseDirection.from(buffer.getInt());
+                var includeSubtypes = buffer.get() != 0;
+                var nodeClassMask = buffer.getLong();
+                var resultMask = buffer.getLong();
+                var nodeId = NodeId.parse(string(buffer));
+                var referenceType = string(buffer);
+                if (index < 0 || max <= 0 || direction == null) {
+                    return null;
+                }
+                return new Position(new BrowseDescription(nodeId, direction, referenceType.isEmpty() ? null : NodeId.parse(referenceType),
+                        includeSubtypes, uint(nodeClassMask), uint(resultMask)), index, max);
+            } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException | UaRuntimeException e) {
+                return null;
+            }
+        }
+
+        private static String string(final ByteBuffer buffer) {
+            var bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
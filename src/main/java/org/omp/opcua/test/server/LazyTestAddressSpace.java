@@ -0,0 +1,563 @@
+package org.omp.opcua.test.server;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.eclipse.milo.opcua.sdk.core.Reference;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.UaNodeManager;
+import org.eclipse.milo.opcua.sdk.server.api.AddressSpaceFilter;
+import org.eclipse.milo.opcua.sdk.server.api.DataItem;
+import org.eclipse.milo.opcua.sdk.server.api.ManagedAddressSpaceFragmentWithLifecycle;
+import org.eclipse.milo.opcua.sdk.server.api.MonitoredItem;
+import org.eclipse.milo.opcua.sdk.server.api.SimpleAddressSpaceFilter;
+import org.eclipse.milo.opcua.sdk.server.api.services.AttributeServices.ReadContext;
+import org.eclipse.milo.opcua.sdk.server.api.services.AttributeServices.WriteContext;
+import org.eclipse.milo.opcua.sdk.server.api.services.ViewServices.BrowseContext;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNode;
+import org.eclipse.milo.opcua.sdk.server.util.SubscriptionModel;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExpandedNodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UShort;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.eclipse.milo.opcua.stack.core.types.structured.ViewDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.WriteValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@code Single} and {@code Array} trees of the {@link TestNamespace}, with nodes created on demand.
+ * <p>
+ * Only the type folders exist up front. Instance folders and variables get created from their node id, e.g.
+ * {@code OMP/Single/Single000042/Int64}, when they get read or browsed, and are kept in a bounded LRU cache.
+ * Monitored nodes are pinned, so that they survive eviction. References of created nodes are derived from the
+ * node ids as well, and never stored.
+ */
+class LazyTestAddressSpace extends ManagedAddressSpaceFragmentWithLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LazyTestAddressSpace.class);
+
+    private final TestNamespace namespace;
+    private final UShort namespaceIndex;
+    private final Map<String, TestNamespace.TestTree> trees = new LinkedHashMap<>();
+    private final NamespaceMetrics metrics;
+    private final SubscriptionModel subscriptionModel;
+    private final AddressSpaceFilter filter;
+
+    private final LazyNodeManager nodeManager;
+    private final int cacheSize;
+    private final Map<NodeId, UaNode> cache;
+    private final Map<NodeId, Pinned> pinned = new ConcurrentHashMap<>();
+
+    private static final class Pinned {
+        final UaNode node;
+        int count;
+
+        Pinned(final UaNode node) {
+            this.node = node;
+        }
+    }
+
+    /**
+     * A parsed node id. The instance is negative for type folders, the type is {@code null} for folders.
+     */
+    private static final class Path {
+        final TestNamespace.TestTree tree;
+        final int instance;
+        final TestNamespace.TestType type;
+
+        Path(final TestNamespace.TestTree tree, final int instance, final TestNamespace.TestType type) {
+            this.tree = tree;
+            this.instance = instance;
+            this.type = type;
+        }
+    }
+
+    LazyTestAddressSpace(
+            final OpcUaServer server,
+            final TestNamespace namespace,
+            final List<TestNamespace.TestTree> trees,
+            final NamespaceMetrics metrics,
+            final int cacheSize) {
+        this(server, new LazyNodeManager(), namespace, trees, metrics, cacheSize);
+    }
+
+    private LazyTestAddressSpace(
+            final OpcUaServer server,
+            final LazyNodeManager nodeManager,
+            final TestNamespace namespace,
+            final List<TestNamespace.TestTree> trees,
+            final NamespaceMetrics metrics,
+            final int cacheSize) {
+        super(server, nodeManager);
+
+        this.nodeManager = nodeManager;
+        this.nodeManager.space = this;
+
+        this.namespace = namespace;
+        this.namespaceIndex = namespace.getNamespaceIndex();
+        for (var tree : trees) {
+            this.trees.put(tree.prefix, tree);
+        }
+        this.metrics = metrics;
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<NodeId, UaNode> eldest) {
+                return size() > cacheSize;
+            }
+        };
+
+        this.subscriptionModel = new SubscriptionModel(server, this);
+        this.filter = SimpleAddressSpaceFilter.create(this::handles);
+
+        getLifecycleManager().addLifecycle(this.subscriptionModel);
+    }
+
+    @Override
+    public AddressSpaceFilter getFilter() {
+        return this.filter;
+    }
+
+    /**
+     * Create the type folder of a tree, below the base folder.
+     */
+    void populate(final NodeId base, final TestNamespace.TestTree tree) {
+        var folder = this.namespace.createTypeFolder(getNodeContext(), tree);
+        this.nodeManager.addNode(folder);
+
+        // adds the forward reference from the base folder too
+        folder.addReference(new Reference(
+                folder.getNodeId(),
+                Identifiers.Organizes,
+                base.expanded(),
+                false
+        ));
+
+        LOG.info("Creating nodes of '{}' on demand: {} instances, caching up to {} nodes", tree.prefix, tree.size(), this.cacheSize);
+    }
+
+    boolean handles(final NodeId nodeId) {
+        return parse(nodeId) != null;
+    }
+
+    private Path parse(final NodeId nodeId) {
+        if (!this.namespaceIndex.equals(nodeId.getNamespaceIndex()) || !(nodeId.getIdentifier() instanceof String)) {
+            return null;
+        }
+        return parse((String) nodeId.getIdentifier());
+    }
+
+    /**
+     * Parse {@code OMP/<prefix>[/<prefix><instance>[/<type>]]}.
+     */
+    private Path parse(final String id) {
+        if (!id.startsWith("OMP/")) {
+            return null;
+        }
+
+        var end = id.indexOf('/', 4);
+        var tree = this.trees.get(end < 0 ? id.substring(4) : id.substring(4, end));
+        if (tree == null) {
+            return null;
+        }
+        if (end < 0) {
+            return new Path(tree, -1, null);
+        }
+
+        var nameStart = end + 1;
+        var nameEnd = id.indexOf('/', nameStart);
+        var instance = parseInstance(tree, id, nameStart, nameEnd < 0 ? id.length() : nameEnd);
+        if (instance < 0) {
+            return null;
+        }
+        if (nameEnd < 0) {
+            return new Path(tree, instance, null);
+        }
+
+        var typeName = id.substring(nameEnd + 1);
+        for (var type : tree.types) {
+            if (type.getName().equals(typeName)) {
+                return new Path(tree, instance, type);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parse an instance name, as created by {@link TestNamespace.TestTree#instanceName(int)}.
+     *
+     * @return The instance, or {@code -1} if the name is not a valid instance name.
+     */
+    private static int parseInstance(final TestNamespace.TestTree tree, final String id, final int start, final int end) {
+        var digits = start + tree.prefix.length();
+        if (!id.startsWith(tree.prefix, start) || end - digits < 6 || end - digits > 10) {
+            return -1;
+        }
+        // zero padded to 6 digits, but not beyond
+        if (end - digits > 6 && id.charAt(digits) == '0') {
+            return -1;
+        }
+
+        long result = 0;
+        for (int i = digits; i < end; i++) {
+            var c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result >= tree.from && result < tree.to ? (int) result : -1;
+    }
+
+    private boolean isVirtual(final NodeId nodeId) {
+        var path = parse(nodeId);
+        return path != null && path.instance >= 0;
+    }
+
+    private boolean isVirtual(final ExpandedNodeId nodeId) {
+        return nodeId.isLocal()
+                && this.namespaceIndex.equals(nodeId.getNamespaceIndex())
+                && nodeId.getIdentifier() instanceof String
+                && isVirtual(new NodeId(this.namespaceIndex, (String) nodeId.getIdentifier()));
+    }
+
+    private NodeId nodeId(final String id) {
+        return new NodeId(this.namespaceIndex, id);
+    }
+
+    private UaNode materialize(final NodeId nodeId) {
+        var pinned = this.pinned.get(nodeId);
+        if (pinned != null) {
+            return pinned.node;
+        }
+
+        synchronized (this.cache) {
+            var node = this.cache.get(nodeId);
+            if (node != null) {
+                return node;
+            }
+        }
+
+        var path = parse(nodeId);
+        if (path == null || path.instance < 0) {
+            return null;
+        }
+
+        var name = path.tree.instanceName(path.instance);
+        UaNode node = path.type == null
+                ? this.namespace.createInstanceFolder(getNodeContext(), path.tree, name)
+                : this.namespace.createVariable(getNodeContext(), path.tree, name, path.type);
+
+        synchronized (this.cache) {
+            var existing = this.cache.putIfAbsent(nodeId, node);
+            return existing != null ? existing : node;
+        }
+    }
+
+    /**
+     * The references of a type folder: its stored references, followed by one to each instance folder, which only get
+     * created when they are accessed.
+     */
+    final class TypeFolderReferences extends AbstractList<Reference> implements RandomAccess {
+
+        private final NodeId nodeId;
+        private final TestNamespace.TestTree tree;
+        private final String folderId;
+        private final List<Reference> stored;
+
+        TypeFolderReferences(final NodeId nodeId, final TestNamespace.TestTree tree, final List<Reference> stored) {
+            this.nodeId = nodeId;
+            this.tree = tree;
+            this.folderId = "OMP/" + tree.prefix;
+            this.stored = stored;
+        }
+
+        @Override
+        public Reference get(final int index) {
+            if (index < this.stored.size()) {
+                return this.stored.get(index);
+            }
+            var instance = this.tree.from + index - this.stored.size();
+            if (index < 0 || instance >= this.tree.to) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+            }
+            return new Reference(this.nodeId, Identifiers.Organizes, nodeId(this.folderId + "/" + this.tree.instanceName(instance)).expanded(), true);
+        }
+
+        @Override
+        public int size() {
+            return this.stored.size() + this.tree.size();
+        }
+
+        /**
+         * The number of stored references, the references to the instance folders follow.
+         */
+        int storedSize() {
+            return this.stored.size();
+        }
+
+        /**
+         * The browse name of the instance folder referenced at an index, without creating the folder.
+         */
+        QualifiedName browseName(final int index) {
+            return new QualifiedName(LazyTestAddressSpace.this.namespaceIndex, instanceName(index));
+        }
+
+        /**
+         * The display name of the instance folder referenced at an index, without creating the folder.
+         */
+        LocalizedText displayName(final int index) {
+            return LazyTestAddressSpace.this.namespace.instanceDisplayName(this.tree, instanceName(index));
+        }
+
+        private String instanceName(final int index) {
+            return this.tree.instanceName(this.tree.from + index - this.stored.size());
+        }
+    }
+
+    /**
+     * References matching a filter, filtered while iterating, so that streams stop early. Getting the size, or a
+     * reference by its index, scans the references.
+     */
+    private static final class FilteredReferences extends AbstractList<Reference> {
+
+        private final List<Reference> references;
+        private final Predicate<Reference> filter;
+
+        FilteredReferences(final List<Reference> references, final Predicate<Reference> filter) {
+            this.references = references;
+            this.filter = filter;
+        }
+
+        @Override
+        public Iterator<Reference> iterator() {
+            var references = this.references.iterator();
+            return new Iterator<>() {
+                private Reference next;
+
+                @Override
+                public boolean hasNext() {
+                    while (this.next == null && references.hasNext()) {
+                        var reference = references.next();
+                        if (FilteredReferences.this.filter.test(reference)) {
+                            this.next = reference;
+                        }
+                    }
+                    return this.next != null;
+                }
+
+                @Override
+                public Reference next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    var result = this.next;
+                    this.next = null;
+                    return result;
+                }
+            };
+        }
+
+        @Override
+        public Spliterator<Reference> spliterator() {
+            return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+        }
+
+        @Override
+        public Reference get(final int index) {
+            var i = 0;
+            for (var reference : this) {
+                if (i++ == index) {
+                    return reference;
+                }
+            }
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + i);
+        }
+
+        @Override
+        public int size() {
+            var result = 0;
+            for (var ignored : this) {
+                result++;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The references of a type folder.
+     *
+     * @return The references, or {@code null} if the node is not a type folder of this address space.
+     */
+    TypeFolderReferences typeFolderReferences(final NodeId nodeId) {
+        var path = parse(nodeId);
+        if (path == null || path.instance >= 0) {
+            return null;
+        }
+        return (TypeFolderReferences) this.nodeManager.getReferences(nodeId);
+    }
+
+    /**
+     * The references of an instance folder or variable.
+     */
+    private List<Reference> references(final NodeId nodeId, final Path path) {
+        var tree = path.tree;
+        var folderId = "OMP/" + tree.prefix;
+        var instanceId = folderId + "/" + tree.instanceName(path.instance);
+
+        var result = new ArrayList<Reference>();
+        if (path.type == null) {
+            result.add(new Reference(nodeId, Identifiers.HasTypeDefinition, Identifiers.FolderType.expanded(), true));
+            result.add(new Reference(nodeId, Identifiers.Organizes, nodeId(folderId).expanded(), false));
+            for (var type : tree.types) {
+                result.add(new Reference(nodeId, Identifiers.Organizes, nodeId(instanceId + "/" + type.getName()).expanded(), true));
+            }
+        } else {
+            result.add(new Reference(nodeId, Identifiers.HasTypeDefinition, Identifiers.BaseDataVariableType.expanded(), true));
+            result.add(new Reference(nodeId, Identifiers.Organizes, nodeId(instanceId).expanded(), false));
+        }
+
+        return result;
+    }
+
+    /**
+     * Node manager which knows about nodes not created yet.
+     */
+    private static final class LazyNodeManager extends UaNodeManager {
+
+        private LazyTestAddressSpace space;
+
+        @Override
+        public boolean containsNode(final NodeId nodeId) {
+            return super.containsNode(nodeId) || this.space.isVirtual(nodeId);
+        }
+
+        @Override
+        public Optional<UaNode> getNode(final NodeId nodeId) {
+            var node = super.getNode(nodeId);
+            if (node.isPresent()) {
+                return node;
+            }
+            return Optional.ofNullable(this.space.materialize(nodeId));
+        }
+
+        @Override
+        public List<Reference> getReferences(final NodeId nodeId) {
+            var path = this.space.parse(nodeId);
+            if (path == null) {
+                return super.getReferences(nodeId);
+            }
+
+            if (path.instance < 0) {
+                // type folders are real nodes, with too many instances to list
+                return this.space.new TypeFolderReferences(nodeId, path.tree, super.getReferences(nodeId));
+            }
+            return this.space.references(nodeId, path);
+        }
+
+        @Override
+        public List<Reference> getReferences(final NodeId nodeId, final Predicate<Reference> filter) {
+            var references = getReferences(nodeId);
+            if (references instanceof TypeFolderReferences) {
+                return new FilteredReferences(references, filter);
+            }
+            return references.stream().filter(filter).collect(Collectors.toList());
+        }
+
+        @Override
+        public synchronized void addReference(final Reference reference) {
+            // references of created nodes get derived from their node ids, see #references
+            if (this.space.isVirtual(reference.getSourceNodeId()) || this.space.isVirtual(reference.getTargetNodeId())) {
+                return;
+            }
+            super.addReference(reference);
+        }
+    }
+
+    private void pin(final List<DataItem> dataItems) {
+        for (var item : dataItems) {
+            var nodeId = item.getReadValueId().getNodeId();
+            var node = this.nodeManager.get(nodeId);
+            if (node == null) {
+                continue;
+            }
+            this.pinned.compute(nodeId, (id, pinned) -> {
+                if (pinned == null) {
+                    pinned = new Pinned(node);
+                }
+                pinned.count++;
+                return pinned;
+            });
+        }
+    }
+
+    private void unpin(final List<DataItem> dataItems) {
+        for (var item : dataItems) {
+            this.pinned.computeIfPresent(item.getReadValueId().getNodeId(), (id, pinned) -> --pinned.count > 0 ? pinned : null);
+        }
+    }
+
+    @Override
+    public void read(final ReadContext context, final Double maxAge, final TimestampsToReturn timestamps, final List<ReadValueId> readValueIds) {
+        this.namespace.getExecutor().execute(context, () -> IndexRangeReads.read(this.nodeManager, this.metrics, context, maxAge, timestamps, readValueIds, super::read));
+    }
+
+    @Override
+    public void write(final WriteContext context, final List<WriteValue> writeValues) {
+        this.namespace.getExecutor().execute(context, () -> super.write(context, writeValues));
+    }
+
+    @Override
+    public void browse(final BrowseContext context, final ViewDescription view, final NodeId nodeId) {
+        this.namespace.getExecutor().execute(context, () -> super.browse(context, view, nodeId));
+    }
+
+    @Override
+    public void getReferences(final BrowseContext context, final ViewDescription view, final NodeId nodeId) {
+        this.namespace.getExecutor().execute(context, () -> super.getReferences(context, view, nodeId));
+    }
+
+    @Override
+    public void onDataItemsCreated(final List<DataItem> dataItems) {
+        pin(dataItems);
+        this.metrics.dataItemsCreated(dataItems);
+        this.namespace.getMonitoredNodes().onDataItemsCreated(dataItems);
+        this.subscriptionModel.onDataItemsCreated(dataItems);
+    }
+
+    @Override
+    public void onDataItemsModified(final List<DataItem> dataItems) {
+        this.subscriptionModel.onDataItemsModified(dataItems);
+    }
+
+    @Override
+    public void onDataItemsDeleted(final List<DataItem> dataItems) {
+        this.metrics.dataItemsDeleted(dataItems);
+        this.namespace.getMonitoredNodes().onDataItemsDeleted(dataItems);
+        this.subscriptionModel.onDataItemsDeleted(dataItems);
+        unpin(dataItems);
+    }
+
+    @Override
+    public void onMonitoringModeChanged(final List<MonitoredItem> monitoredItems) {
+        this.namespace.getMonitoredNodes().onMonitoringModeChanged(monitoredItems);
+        this.subscriptionModel.onMonitoringModeChanged(monitoredItems);
+    }
+}
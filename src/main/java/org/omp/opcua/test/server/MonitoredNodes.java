@@ -0,0 +1,109 @@
+package org.omp.opcua.test.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.milo.opcua.sdk.server.api.DataItem;
+import org.eclipse.milo.opcua.sdk.server.api.MonitoredItem;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+
+/**
+ * An index of the nodes which clients currently watch, maintained from the data item events of a namespace.
+ * <p>
+ * A node is observed while at least one data item on its value has sampling enabled. The {@link Listener} gets
+ * notified when a node becomes observed, and when it stops being observed, so that a namespace can skip the work for
+ * nodes no one watches. Data item events are rare compared to reads, so the index simply synchronizes them.
+ */
+public class MonitoredNodes {
+
+    @FunctionalInterface
+    public interface Listener {
+        void observedChanged(NodeId nodeId, boolean observed);
+    }
+
+    private final Listener listener;
+    private final Map<NodeId, List<DataItem>> items = new HashMap<>();
+    private final Set<NodeId> observed = ConcurrentHashMap.newKeySet();
+
+    public MonitoredNodes(final Listener listener) {
+        this.listener = listener;
+    }
+
+    public boolean isObserved(final NodeId nodeId) {
+        return this.observed.contains(nodeId);
+    }
+
+    /**
+     * The number of observed nodes.
+     */
+    public int size() {
+        return this.observed.size();
+    }
+
+    public synchronized void onDataItemsCreated(final List<DataItem> dataItems) {
+        for (var item : dataItems) {
+            var nodeId = nodeIdOf(item);
+            if (nodeId != null) {
+                this.items.computeIfAbsent(nodeId, k -> new ArrayList<>(1)).add(item);
+                update(nodeId);
+            }
+        }
+    }
+
+    public synchronized void onDataItemsDeleted(final List<DataItem> dataItems) {
+        for (var item : dataItems) {
+            var nodeId = nodeIdOf(item);
+            var items = nodeId != null ? this.items.get(nodeId) : null;
+            if (items == null) {
+                continue;
+            }
+            // data items don't override equals
+            items.removeIf(current -> current == item);
+            if (items.isEmpty()) {
+                this.items.remove(nodeId);
+            }
+            update(nodeId);
+        }
+    }
+
+    public synchronized void onMonitoringModeChanged(final List<MonitoredItem> monitoredItems) {
+        for (var item : monitoredItems) {
+            var nodeId = nodeIdOf(item);
+            if (nodeId != null) {
+                update(nodeId);
+            }
+        }
+    }
+
+    private void update(final NodeId nodeId) {
+        var items = this.items.get(nodeId);
+
+        var observed = false;
+        if (items != null) {
+            for (var item : items) {
+                if (item.isSamplingEnabled()) {
+                    observed = true;
+                    break;
+                }
+            }
+        }
+
+        var changed = observed ? this.observed.add(nodeId) : this.observed.remove(nodeId);
+        if (changed) {
+            this.listener.observedChanged(nodeId, observed);
+        }
+    }
+
+    private static NodeId nodeIdOf(final MonitoredItem item) {
+        var readValueId = item.getReadValueId();
+        if (!AttributeId.Value.uid().equals(readValueId.getAttributeId())) {
+            return null;
+        }
+        return readValueId.getNodeId();
+    }
+}
@@ -0,0 +1,115 @@
+package org.omp.opcua.test.server;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.milo.opcua.sdk.server.api.DataItem;
+import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilter;
+import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilterContext;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Metrics of a namespace: monitored items, and value reads and writes through the attribute filter chains.
+ * <p>
+ * Recording doesn't allocate: meters are created once, and durations get recorded as plain {@code long}s.
+ */
+public class NamespaceMetrics {
+
+    private final AtomicLong monitoredItems = new AtomicLong();
+    private final Timer reads;
+    private final Timer writes;
+    private final AttributeFilter filter;
+
+    public NamespaceMetrics(final MeterRegistry registry, final String namespace) {
+        var tags = Tags.of("namespace", namespace);
+
+        Gauge.builder("omp.opcua.monitored.items", this.monitoredItems, AtomicLong::get)
+                .tags(tags)
+                .description("Data items monitoring nodes of the namespace")
+                .register(registry);
+
+        this.reads = Timer.builder("omp.opcua.reads")
+                .tags(tags)
+                .description("Value reads through the attribute filter chain, including sampling")
+                .publishPercentileHistogram()
+                .register(registry);
+
+        this.writes = Timer.builder("omp.opcua.writes")
+                .tags(tags)
+                .description("Value writes through the attribute filter chain")
+                .publishPercentileHistogram()
+                .register(registry);
+
+        this.filter = new TimingFilter(this.reads, this.writes);
+    }
+
+    /**
+     * A filter timing value reads and writes. Must be added before the filters which it should time.
+     * <p>
+     * The filter is stateless, and may be shared by all nodes of the namespace.
+     */
+    public AttributeFilter timing() {
+        return this.filter;
+    }
+
+    /**
+     * Record a value read which didn't go through the filter chain.
+     */
+    public void recordRead(final long nanos) {
+        this.reads.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void dataItemsCreated(final List<DataItem> dataItems) {
+        this.monitoredItems.addAndGet(dataItems.size());
+    }
+
+    public void dataItemsDeleted(final List<DataItem> dataItems) {
+        this.monitoredItems.addAndGet(-dataItems.size());
+    }
+
+    private static final class TimingFilter implements AttributeFilter {
+
+        private final Timer reads;
+        private final Timer writes;
+
+        TimingFilter(final Timer reads, final Timer writes) {
+            this.reads = reads;
+            this.writes = writes;
+        }
+
+        @Override
+        public Object getAttribute(final AttributeFilterContext.GetAttributeContext ctx, final AttributeId attributeId) {
+            if (attributeId != AttributeId.Value) {
+                return ctx.getAttribute(attributeId);
+            }
+
+            var start = System.nanoTime();
+            try {
+                return ctx.getAttribute(attributeId);
+            } finally {
+                this.reads.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public void setAttribute(final AttributeFilterContext.SetAttributeContext ctx, final AttributeId attributeId, final Object value) {
+            if (attributeId != AttributeId.Value) {
+                ctx.setAttribute(attributeId, value);
+                return;
+            }
+
+            var start = System.nanoTime();
+            try {
+                ctx.setAttribute(attributeId, value);
+            } finally {
+                this.writes.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
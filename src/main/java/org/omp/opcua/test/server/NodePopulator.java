@@ -0,0 +1,269 @@
+package org.omp.opcua.test.server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.eclipse.milo.opcua.sdk.core.Reference;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.api.NodeManager;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNodeContext;
+import org.eclipse.milo.opcua.stack.core.NamespaceTable;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExpandedNodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Populates a node manager in parallel.
+ * <p>
+ * The instances get split into contiguous partitions, which get built concurrently. Each partition builds into its own
+ * batch, using its own {@link UaNodeContext}. Completed batches get added to the node manager in bulk, in the order of
+ * the partitions, so that browsing returns the instances in order.
+ */
+public class NodePopulator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NodePopulator.class);
+
+    private final String name;
+    private final UaNodeContext context;
+    private final int parallelism;
+    private final int minPartitionSize;
+
+    public interface Partition {
+        /**
+         * Build the instances of a partition.
+         *
+         * @param context The context to create nodes with, and to add them to.
+         * @param from The first instance, inclusive.
+         * @param to The last instance, exclusive.
+         */
+        void populate(UaNodeContext context, int from, int to);
+    }
+
+    public NodePopulator(final String name, final UaNodeContext context, final PopulationConfiguration configuration) {
+        this.name = name;
+        this.context = context;
+        this.parallelism = Math.max(1, configuration.parallelism().orElse(Runtime.getRuntime().availableProcessors()));
+        this.minPartitionSize = Math.max(1, configuration.minPartitionSize());
+    }
+
+    /**
+     * Populate instances, blocking until all of them got added to the node manager.
+     *
+     * @param what The name of what gets populated, for logging.
+     * @param count The number of instances.
+     * @param partition The builder of a partition.
+     */
+    public void populate(final String what, final int count, final Partition partition) {
+        var start = System.nanoTime();
+
+        var threads = Math.max(1, Math.min(this.parallelism, count / this.minPartitionSize));
+        // more partitions than threads, to even out the load
+        var partitions = threads == 1 ? 1 : Math.min(threads * 4, count / this.minPartitionSize);
+
+        if (partitions == 1) {
+            var batch = new Batch(this.context);
+            partition.populate(batch, 0, count);
+            batch.addNodes();
+            batch.addReferences();
+        } else {
+            populate(count, partition, threads, partitions);
+        }
+
+        LOG.info("Populated {} instances of '{}/{}' in {} ms, using {} partition(s) on {} thread(s)",
+                count, this.name, what, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), partitions, threads);
+    }
+
+    private void populate(final int count, final Partition partition, final int threads, final int partitions) {
+        var workers = new AtomicInteger();
+        var executor = Executors.newFixedThreadPool(threads, r -> {
+            var thread = new Thread(r, this.name + "-populate-" + workers.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            var batches = new ArrayList<Future<Batch>>(partitions);
+            for (int i = 0; i < partitions; i++) {
+                // spread the remainder over the first partitions
+                var from = (int) ((long) count * i / partitions);
+                var to = (int) ((long) count * (i + 1) / partitions);
+                batches.add(executor.submit(() -> {
+                    var batch = new Batch(this.context);
+                    partition.populate(batch, from, to);
+                    // the node map is concurrent, the order doesn't matter
+                    batch.addNodes();
+                    return batch;
+                }));
+            }
+
+            for (var batch : batches) {
+                batch.get().addReferences();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted populating " + this.name, e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to populate " + this.name, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Format a name with a zero padded number, like {@code String.format("%s%0<width>d", prefix, value)} does.
+     */
+    public static String zeroPadded(final String prefix, final int value, final int width) {
+        var digits = Integer.toString(value);
+        var result = new StringBuilder(prefix.length() + Math.max(width, digits.length()));
+        result.append(prefix);
+        for (int i = digits.length(); i < width; i++) {
+            result.append('0');
+        }
+        return result.append(digits).toString();
+    }
+
+    /**
+     * A node context collecting nodes and references, instead of adding them to the node manager one by one.
+     * <p>
+     * Once the batch got added, it delegates to the node manager, as the nodes keep their context.
+     */
+    private static final class Batch implements UaNodeContext, NodeManager<UaNode> {
+
+        private final UaNodeContext target;
+        private final Map<NodeId, UaNode> nodes = new LinkedHashMap<>();
+        // by source node, like the node manager keeps them
+        private final Map<NodeId, List<Reference>> references = new LinkedHashMap<>();
+        private volatile NodeManager<UaNode> nodeManager = this;
+
+        Batch(final UaNodeContext target) {
+            this.target = target;
+        }
+
+        void addNodes() {
+            var nodeManager = this.target.getNodeManager();
+            for (var node : this.nodes.values()) {
+                nodeManager.addNode(node);
+            }
+        }
+
+        void addReferences() {
+            var nodeManager = this.target.getNodeManager();
+            // adding references synchronizes on the node manager, acquire that lock once per batch
+            synchronized (nodeManager) {
+                for (var references : this.references.values()) {
+                    for (var reference : references) {
+                        nodeManager.addReference(reference);
+                    }
+                }
+            }
+            this.nodeManager = nodeManager;
+            this.nodes.clear();
+            this.references.clear();
+        }
+
+        @Override
+        public OpcUaServer getServer() {
+            return this.target.getServer();
+        }
+
+        @Override
+        public NodeManager<UaNode> getNodeManager() {
+            return this.nodeManager;
+        }
+
+        @Override
+        public NamespaceTable getNamespaceTable() {
+            return this.target.getNamespaceTable();
+        }
+
+        @Override
+        public boolean containsNode(final NodeId nodeId) {
+            return this.nodes.containsKey(nodeId) || this.target.getNodeManager().containsNode(nodeId);
+        }
+
+        @Override
+        public boolean containsNode(final ExpandedNodeId nodeId, final NamespaceTable namespaceTable) {
+            return nodeId.toNodeId(namespaceTable).map(this::containsNode).orElse(false);
+        }
+
+        @Override
+        public Optional<UaNode> addNode(final UaNode node) {
+            return Optional.ofNullable(this.nodes.put(node.getNodeId(), node));
+        }
+
+        @Override
+        public Optional<UaNode> getNode(final NodeId nodeId) {
+            var node = this.nodes.get(nodeId);
+            return node != null ? Optional.of(node) : this.target.getNodeManager().getNode(nodeId);
+        }
+
+        @Override
+        public Optional<UaNode> getNode(final ExpandedNodeId nodeId, final NamespaceTable namespaceTable) {
+            return nodeId.toNodeId(namespaceTable).flatMap(this::getNode);
+        }
+
+        @Override
+        public Optional<UaNode> removeNode(final NodeId nodeId) {
+            var node = this.nodes.remove(nodeId);
+            return node != null ? Optional.of(node) : this.target.getNodeManager().removeNode(nodeId);
+        }
+
+        @Override
+        public Optional<UaNode> removeNode(final ExpandedNodeId nodeId, final NamespaceTable namespaceTable) {
+            return nodeId.toNodeId(namespaceTable).flatMap(this::removeNode);
+        }
+
+        @Override
+        public void addReference(final Reference reference) {
+            this.references.computeIfAbsent(reference.getSourceNodeId(), id -> new ArrayList<>()).add(reference);
+        }
+
+        @Override
+        public void addReferences(final Reference reference, final NamespaceTable namespaceTable) {
+            addReference(reference);
+            reference.invert(namespaceTable).ifPresent(this::addReference);
+        }
+
+        @Override
+        public void removeReference(final Reference reference) {
+            var references = this.references.get(reference.getSourceNodeId());
+            if (references == null || !references.remove(reference)) {
+                this.target.getNodeManager().removeReference(reference);
+            }
+        }
+
+        @Override
+        public void removeReferences(final Reference reference, final NamespaceTable namespaceTable) {
+            removeReference(reference);
+            reference.invert(namespaceTable).ifPresent(this::removeReference);
+        }
+
+        @Override
+        public List<Reference> getReferences(final NodeId nodeId) {
+            return getReferences(nodeId, reference -> true);
+        }
+
+        @Override
+        public List<Reference> getReferences(final NodeId nodeId, final Predicate<Reference> filter) {
+            var result = new ArrayList<Reference>();
+            for (var reference : this.references.getOrDefault(nodeId, List.of())) {
+                if (filter.test(reference)) {
+                    result.add(reference);
+                }
+            }
+            result.addAll(this.target.getNodeManager().getReferences(nodeId, filter));
+            return result;
+        }
+    }
+}
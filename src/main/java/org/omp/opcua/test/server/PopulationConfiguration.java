@@ -0,0 +1,21 @@
+package org.omp.opcua.test.server;
+
+import java.util.OptionalInt;
+
+import io.smallrye.config.WithDefault;
+
+/**
+ * How a namespace gets populated at startup, see {@link NodePopulator}.
+ */
+public interface PopulationConfiguration {
+    /**
+     * Number of threads building nodes in parallel, defaults to the number of available processors.
+     */
+    OptionalInt parallelism();
+
+    /**
+     * The minimum number of instances in a partition, smaller namespaces get populated by fewer threads.
+     */
+    @WithDefault("1000")
+    int minPartitionSize();
+}
@@ -0,0 +1,225 @@
+package org.omp.opcua.test.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.eclipse.milo.opcua.sdk.server.AbstractLifecycle;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.api.DataItem;
+import org.eclipse.milo.opcua.sdk.server.api.MonitoredItem;
+import org.eclipse.milo.opcua.sdk.server.api.services.AttributeServices;
+import org.eclipse.milo.opcua.sdk.server.util.SubscriptionModel;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+
+/**
+ * A subscription model which gets notified about changes, instead of sampling.
+ * <p>
+ * Nodes which get {@link #register(NodeId, Supplier) registered} push their value to all of their data items
+ * when they {@link Source#changed() change}. Data items which can't be served that way (non-value attributes,
+ * index ranges, unregistered nodes) fall back to the sampling {@link SubscriptionModel}.
+ */
+public class PushSubscriptionModel extends AbstractLifecycle {
+
+    private static final DataItem[] NO_ITEMS = new DataItem[0];
+
+    private final SubscriptionModel sampling;
+    private final Map<NodeId, Source> sources = new ConcurrentHashMap<>();
+
+    public PushSubscriptionModel(final OpcUaServer server, final AttributeServices attributeServices) {
+        this.sampling = new SubscriptionModel(server, attributeServices);
+    }
+
+    @Override
+    protected void onStartup() {
+        this.sampling.startup();
+    }
+
+    @Override
+    protected void onShutdown() {
+        this.sampling.shutdown();
+    }
+
+    /**
+     * Register a node for pushing its value.
+     *
+     * @param nodeId The node to register.
+     * @param supplier The supplier of the current value.
+     * @return The source, which must be notified when the value changed.
+     */
+    public Source register(final NodeId nodeId, final Supplier<DataValue> supplier) {
+        var source = new Source(supplier);
+        this.sources.put(nodeId, source);
+        return source;
+    }
+
+    private Source sourceFor(final MonitoredItem item) {
+        var readValueId = item.getReadValueId();
+
+        if (!AttributeId.Value.uid().equals(readValueId.getAttributeId())) {
+            return null;
+        }
+        if (readValueId.getIndexRange() != null && !readValueId.getIndexRange().isEmpty()) {
+            return null;
+        }
+        if (readValueId.getDataEncoding() != null && readValueId.getDataEncoding().isNotNull()) {
+            return null;
+        }
+
+        return this.sources.get(readValueId.getNodeId());
+    }
+
+    public void onDataItemsCreated(final List<DataItem> dataItems) {
+        var sampled = new ArrayList<DataItem>();
+
+        for (var item : dataItems) {
+            var source = sourceFor(item);
+            if (source != null) {
+                source.add(item);
+            } else {
+                sampled.add(item);
+            }
+        }
+
+        if (!sampled.isEmpty()) {
+            this.sampling.onDataItemsCreated(sampled);
+        }
+    }
+
+    public void onDataItemsModified(final List<DataItem> dataItems) {
+        var sampled = new ArrayList<DataItem>();
+
+        for (var item : dataItems) {
+            // pushed items don't care about the sampling interval
+            var source = sourceFor(item);
+            if (source == null || !source.contains(item)) {
+                sampled.add(item);
+            }
+        }
+
+        if (!sampled.isEmpty()) {
+            this.sampling.onDataItemsModified(sampled);
+        }
+    }
+
+    public void onDataItemsDeleted(final List<DataItem> dataItems) {
+        var sampled = new ArrayList<DataItem>();
+
+        for (var item : dataItems) {
+            var source = sourceFor(item);
+            if (source == null || !source.remove(item)) {
+                sampled.add(item);
+            }
+        }
+
+        if (!sampled.isEmpty()) {
+            this.sampling.onDataItemsDeleted(sampled);
+        }
+    }
+
+    public void onMonitoringModeChanged(final List<MonitoredItem> monitoredItems) {
+        var sampled = new ArrayList<MonitoredItem>();
+
+        for (var item : monitoredItems) {
+            var source = sourceFor(item);
+            if (source != null && item instanceof DataItem && source.contains((DataItem) item)) {
+                if (item.isSamplingEnabled()) {
+                    source.push((DataItem) item);
+                }
+            } else {
+                sampled.add(item);
+            }
+        }
+
+        if (!sampled.isEmpty()) {
+            this.sampling.onMonitoringModeChanged(sampled);
+        }
+    }
+
+    public static final class Source {
+
+        private final Supplier<DataValue> supplier;
+        private volatile DataItem[] items = NO_ITEMS;
+
+        private Source(final Supplier<DataValue> supplier) {
+            this.supplier = supplier;
+        }
+
+        /**
+         * Notify the source that its value changed.
+         * <p>
+         * This is a no-op if no one monitors the node.
+         *
+         * @return The number of data items which got the new value.
+         */
+        public int changed() {
+            var items = this.items;
+            if (items.length == 0) {
+                return 0;
+            }
+
+            var value = this.supplier.get();
+
+            TimestampsToReturn lastTimestamps = null;
+            DataValue lastValue = null;
+            int result = 0;
+
+            for (var item : items) {
+                if (!item.isSamplingEnabled()) {
+                    continue;
+                }
+                var timestamps = item.getTimestampsToReturn();
+                if (timestamps != lastTimestamps) {
+                    lastTimestamps = timestamps;
+                    lastValue = DataValue.derivedValue(value, timestamps);
+                }
+                item.setValue(lastValue);
+                result++;
+            }
+            return result;
+        }
+
+        private void push(final DataItem item) {
+            item.setValue(DataValue.derivedValue(this.supplier.get(), item.getTimestampsToReturn()));
+        }
+
+        private synchronized void add(final DataItem item) {
+            var items = Arrays.copyOf(this.items, this.items.length + 1);
+            items[items.length - 1] = item;
+            this.items = items;
+
+            if (item.isSamplingEnabled()) {
+                push(item);
+            }
+        }
+
+        private synchronized boolean remove(final DataItem item) {
+            var items = this.items;
+            for (int i = 0; i < items.length; i++) {
+                if (items[i] == item) {
+                    var result = new DataItem[items.length - 1];
+                    System.arraycopy(items, 0, result, 0, i);
+                    System.arraycopy(items, i + 1, result, i, items.length - i - 1);
+                    this.items = result;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean contains(final DataItem item) {
+            for (var current : this.items) {
+                if (current == item) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.omp.opcua.test.server;
+
+import java.util.OptionalLong;
+import java.util.SplittableRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A fast, non thread-safe random generator, based on the SplitMix64 algorithm (also used by
+ * {@link SplittableRandom}).
+ * <p>
+ * Instead of sharing a single {@link java.util.Random}, which makes all threads contend on the same seed, each node
+ * or device {@link #derive(long) derives} its own generator from a root generator. Seeding the root makes a run
+ * reproducible.
+ * <p>
+ * The static methods operate on a seed stored in a {@code long[]}, for state kept in primitive columns.
+ */
+public final class RandomSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RandomSource.class);
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long seed;
+
+    public RandomSource(final long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Create a new root generator.
+     *
+     * @param name The name of the component, for logging.
+     * @param seed The seed to use, if missing a random seed will be used.
+     * @return The new generator.
+     */
+    public static RandomSource root(final String name, final OptionalLong seed) {
+        var result = seed.orElseGet(() -> new SplittableRandom().nextLong());
+        LOG.info("Random seed for '{}': {}{}", name, result, seed.isPresent() ? " (fixed)" : "");
+        return new RandomSource(result);
+    }
+
+    /**
+     * Derive a generator for a key, without advancing this generator.
+     * <p>
+     * The same key always derives the same generator, no matter in which order, or on which thread, generators get
+     * derived.
+     *
+     * @param key The key, e.g. an index or a hash of a name.
+     * @return The new generator.
+     */
+    public RandomSource derive(final long key) {
+        return new RandomSource(mix64(this.seed ^ mix64(key + GOLDEN_GAMMA)));
+    }
+
+    public long nextLong() {
+        return mix64(this.seed += GOLDEN_GAMMA);
+    }
+
+    public double nextDouble() {
+        return toDouble(nextLong());
+    }
+
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    public double nextGaussian() {
+        return toGaussian(nextLong(), nextLong());
+    }
+
+    public static long nextLong(final long[] seeds, final int i) {
+        return mix64(seeds[i] += GOLDEN_GAMMA);
+    }
+
+    public static double nextDouble(final long[] seeds, final int i) {
+        return toDouble(nextLong(seeds, i));
+    }
+
+    public static double nextGaussian(final long[] seeds, final int i) {
+        return toGaussian(nextLong(seeds, i), nextLong(seeds, i));
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static double toDouble(final long bits) {
+        return (bits >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Box-Muller transform, using only the first of the two results, so that no state needs to be kept.
+     */
+    private static double toGaussian(final long bits1, final long bits2) {
+        // (0, 1], so that the log is finite
+        var u1 = 1.0 - toDouble(bits1);
+        var u2 = toDouble(bits2);
+        return Math.sqrt(-2.0 * Math.log(u1)) * Math.cos(2.0 * Math.PI * u2);
+    }
+}
@@ -5,6 +5,7 @@ import static org.eclipse.milo.opcua.sdk.server.api.config.OpcUaServerConfig.USE
 import static org.eclipse.milo.opcua.stack.core.StatusCodes.Bad_ConfigurationError;
 
 import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -12,6 +13,7 @@ import java.security.KeyPair;
 import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
@@ -19,9 +21,11 @@ import java.util.LinkedList;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
@@ -33,6 +37,7 @@ import org.eclipse.milo.opcua.sdk.server.identity.IdentityValidator;
 import org.eclipse.milo.opcua.sdk.server.identity.UsernameIdentityValidator;
 import org.eclipse.milo.opcua.sdk.server.util.HostnameUtil;
 import org.eclipse.milo.opcua.stack.core.UaRuntimeException;
+import org.eclipse.milo.opcua.stack.core.channel.EncodingLimits;
 import org.eclipse.milo.opcua.stack.core.security.DefaultCertificateManager;
 import org.eclipse.milo.opcua.stack.core.security.DefaultTrustListManager;
 import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
@@ -42,16 +47,17 @@ import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
 import org.eclipse.milo.opcua.stack.core.types.enumerated.MessageSecurityMode;
 import org.eclipse.milo.opcua.stack.core.types.structured.BuildInfo;
 import org.eclipse.milo.opcua.stack.core.util.CertificateUtil;
-import org.eclipse.milo.opcua.stack.core.util.SelfSignedCertificateGenerator;
-import org.eclipse.milo.opcua.stack.core.util.SelfSignedHttpsCertificateBuilder;
 import org.eclipse.milo.opcua.stack.server.EndpointConfiguration;
 import org.eclipse.milo.opcua.stack.server.security.DefaultServerCertificateValidator;
 import org.omp.opcua.test.server.simulation.SimulationConfiguration;
 import org.omp.opcua.test.server.simulation.SimulationNamespace;
+import org.omp.opcua.test.server.storm.StormConfiguration;
+import org.omp.opcua.test.server.storm.StormNamespace;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.dentrassi.crypto.pem.PemKeyStoreProvider;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.runtime.Startup;
 
 @Startup
@@ -61,6 +67,7 @@ public class Server {
 
     public static final String NAME = "OMP OPC UA Test Server";
     public static final String PRODUCT_URI = "urn:omp:milo:test-server";
+    static final String DISCOVERY_PATH = "/milo/discovery";
     public static final Map<String, String> USERS;
 
     static {
@@ -88,27 +95,64 @@ public class Server {
     @ConfigProperty(name = "omp.opcua.milo.server.enableAnonymous", defaultValue = "false")
     boolean enableAnonymous;
 
+    // large array test nodes need encoding limits beyond the defaults
+
+    @ConfigProperty(name = "omp.opcua.milo.server.encoding.maxChunkSize", defaultValue = "65535")
+    int maxChunkSize;
+    @ConfigProperty(name = "omp.opcua.milo.server.encoding.maxChunkCount", defaultValue = "64")
+    int maxChunkCount;
+    @ConfigProperty(name = "omp.opcua.milo.server.encoding.maxMessageSize", defaultValue = "2097152")
+    int maxMessageSize;
+
     @Inject
     TestConfiguration configuration;
 
     @Inject
     SimulationConfiguration simulationConfiguration;
 
+    @Inject
+    StormConfiguration stormConfiguration;
+
+    @Inject
+    ShardConfiguration shardConfiguration;
+
+    @Inject
+    ExecutionConfiguration executionConfiguration;
+
+    @Inject
+    MeterRegistry registry;
+
+    private OpcUaServer server;
+    private ServiceExecutor executor;
+    private TestNamespace testNamespace;
+    private SimulationNamespace simulationNamespace;
+    private StormNamespace stormNamespace;
+
     @PostConstruct
     public void run() throws Exception {
 
+        var start = System.nanoTime();
+
         Files.createDirectories(this.securityDirectory);
 
         var hostnames = getHostnames();
 
         var pkiDir = this.securityDirectory.resolve("pki").toFile();
 
-        var loader = KeyCertMaterial.createSelfSigned(hostnames);
-
-        var certificateManager = new DefaultCertificateManager(
-                loader.getServerKeyPair(),
-                loader.getServerCertificateChain()
-        );
+        var shard = Shard.of(this.shardConfiguration);
+        // the other shards list this one by its index, see ShardDiscoveryServiceSet
+        var shardApplicationUri = shard.isSharded() ? Optional.of(PRODUCT_URI + ":shard:" + shard.getIndex()) : Optional.<String>empty();
+
+        // key generation takes a while, set up everything not depending on the server certificate in the meantime
+        var serverMaterial = KeyCertMaterial.loadOrCreate(this.securityDirectory.resolve("server.pfx"), getStableHostnames(), shardApplicationUri,
+                stale -> {
+                    // keep the application URI, clients still need to trust the new certificate though
+                    var applicationUri = shardApplicationUri.or(() -> stale.flatMap(KeyCertMaterial::getApplicationUri));
+                    return applicationUri.isPresent()
+                            ? KeyCertMaterial.createSelfSigned(hostnames, applicationUri.get())
+                            : KeyCertMaterial.createSelfSigned(hostnames);
+                });
+        var httpsMaterial = this.httpsSelfSigned ? createSelfSignedHttpsMaterial() : null;
 
         var trustListManager = new DefaultTrustListManager(pkiDir);
 
@@ -131,17 +175,6 @@ public class Server {
             LOG.warn("Anonymous authentication enabled");
         }
 
-        var certificate = certificateManager.getCertificates()
-                .stream()
-                .findFirst()
-                .orElseThrow(() -> new UaRuntimeException(Bad_ConfigurationError, "no certificate found"));
-
-        var applicationUri = CertificateUtil
-                .getSanUri(certificate)
-                .orElseThrow(() -> new UaRuntimeException(Bad_ConfigurationError, "certificate is missing the application URI"));
-
-        var endpointConfigurations = createEndpointConfigurations(certificate, hostnames);
-
         final KeyPair httpsKeyPair;
         final X509Certificate httpsCertificate;
 
@@ -160,15 +193,31 @@ public class Server {
         } else {
 
             LOG.info("Using self-signed HTTPS certificate");
-            httpsKeyPair = SelfSignedCertificateGenerator.generateRsaKeyPair(2048);
-            var httpsCertificateBuilder = new SelfSignedHttpsCertificateBuilder(httpsKeyPair);
-            httpsCertificateBuilder.setCommonName(HostnameUtil.getHostname());
-            HostnameUtil.getHostnames("0.0.0.0").forEach(httpsCertificateBuilder::addDnsName);
-            this.discoveryHostname.ifPresent(httpsCertificateBuilder::addDnsName);
-            httpsCertificate = httpsCertificateBuilder.build();
+            var material = httpsMaterial.get();
+            httpsKeyPair = material.getServerKeyPair();
+            httpsCertificate = material.getServerCertificateChain()[0];
 
         }
 
+        // everything from here on needs the server certificate
+        var loader = serverMaterial.get();
+
+        var certificateManager = new DefaultCertificateManager(
+                loader.getServerKeyPair(),
+                loader.getServerCertificateChain()
+        );
+
+        var certificate = certificateManager.getCertificates()
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> new UaRuntimeException(Bad_ConfigurationError, "no certificate found"));
+
+        var applicationUri = CertificateUtil
+                .getSanUri(certificate)
+                .orElseThrow(() -> new UaRuntimeException(Bad_ConfigurationError, "certificate is missing the application URI"));
+
+        var endpointConfigurations = createEndpointConfigurations(certificate, hostnames);
+
         var serverConfig = OpcUaServerConfig.builder()
                 .setApplicationUri(applicationUri)
                 .setApplicationName(LocalizedText.english(NAME))
@@ -188,19 +237,81 @@ public class Server {
                 .setHttpsCertificate(httpsCertificate)
                 .setIdentityValidator(new CompositeValidator<>(validators))
                 .setProductUri(PRODUCT_URI)
+                .setEncodingLimits(new EncodingLimits(
+                        this.maxChunkSize,
+                        this.maxChunkCount,
+                        this.maxMessageSize,
+                        EncodingLimits.DEFAULT_MAX_RECURSION_DEPTH))
                 .build();
 
         // start server
 
-        var server = new OpcUaServer(serverConfig);
-        server.startup().get();
+        this.executor = ServiceExecutor.create(this.executionConfiguration);
+        this.server = new OpcUaServer(serverConfig);
+
+        if (shard.isSharded()) {
+            LOG.info("Serving shard {}", shard);
+            ShardDiscoveryServiceSet.register(this.server, DISCOVERY_PATH, shard, getDiscoveryUrlTemplate());
+        }
+
+        this.server.startup().get();
 
         // add test namespace
 
-        var testNamespace = new TestNamespace(server, this.configuration);
-        testNamespace.startup();
-        var simulationNamespace = new SimulationNamespace(server, this.simulationConfiguration);
-        simulationNamespace.startup();
+        this.testNamespace = new TestNamespace(this.server, this.configuration, shard, this.executor, this.registry);
+        this.testNamespace.startup();
+        this.simulationNamespace = new SimulationNamespace(this.server, this.simulationConfiguration, shard, this.executor, this.registry);
+        this.simulationNamespace.startup();
+        this.stormNamespace = new StormNamespace(this.server, this.stormConfiguration, this.registry);
+        this.stormNamespace.startup();
+
+        var startup = Duration.ofNanos(System.nanoTime() - start);
+        LOG.info("Server ready in {} ms, {} ms after JVM start", startup.toMillis(), ManagementFactory.getRuntimeMXBean().getUptime());
+
+        new ServerMetrics(this.server, startup).bindTo(this.registry);
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+
+        if (this.stormNamespace != null) {
+            this.stormNamespace.shutdown();
+        }
+        if (this.simulationNamespace != null) {
+            this.simulationNamespace.shutdown();
+        }
+        if (this.testNamespace != null) {
+            this.testNamespace.shutdown();
+        }
+        if (this.server != null) {
+            this.server.shutdown().get();
+        }
+        if (this.executor != null) {
+            this.executor.close();
+        }
+
+    }
+
+    private CompletableFuture<KeyCertMaterial> createSelfSignedHttpsMaterial() {
+        var hostnames = new LinkedHashSet<>(HostnameUtil.getHostnames("0.0.0.0"));
+        this.discoveryHostname.ifPresent(hostnames::add);
+        return KeyCertMaterial.loadOrCreate(this.securityDirectory.resolve("https.pfx"), hostnames,
+                stale -> KeyCertMaterial.createSelfSignedHttps(HostnameUtil.getHostname(), hostnames));
+    }
+
+    /**
+     * The discovery URL of each shard, with an {@code {index}} placeholder.
+     */
+    private String getDiscoveryUrlTemplate() {
+        var template = this.shardConfiguration.discoveryUrl();
+        if (template.isPresent()) {
+            return template.get();
+        }
+        var hostname = Shard.template(Shard.hostname());
+        if (!hostname.contains("{index}")) {
+            LOG.warn("Hostname '{}' has no ordinal, all shards get the same discovery URL, configure it explicitly", hostname);
+        }
+        return String.format("opc.tcp://%s:%s%s", hostname, this.tcpBindPort, DISCOVERY_PATH);
     }
 
     private Set<String> getHostnames() {
@@ -220,6 +331,13 @@ public class Server {
 
     }
 
+    /**
+     * The hostnames which survive a restart, other than the addresses. Cached key material must be valid for them.
+     */
+    private Set<String> getStableHostnames() {
+        return Collections.singleton(this.discoveryHostname.orElseGet(HostnameUtil::getHostname));
+    }
+
     private Set<EndpointConfiguration> createEndpointConfigurations(X509Certificate certificate, Set<String> hostnames) {
 
         var result = new LinkedHashSet<EndpointConfiguration>();
@@ -264,7 +382,7 @@ public class Server {
         // no security - discovery
         consumer.accept(
                 builder.copy()
-                        .setPath("/milo/discovery")
+                        .setPath(DISCOVERY_PATH)
                         .setSecurityPolicy(SecurityPolicy.None)
                         .setSecurityMode(MessageSecurityMode.None)
                         .build()
@@ -0,0 +1,54 @@
+package org.omp.opcua.test.server;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Server wide metrics: startup time, sessions, subscriptions and publish queues.
+ * <p>
+ * All values are read from the server when being scraped, nothing is recorded on the hot path.
+ */
+public class ServerMetrics implements MeterBinder {
+
+    private final OpcUaServer server;
+    private final Duration startup;
+
+    public ServerMetrics(final OpcUaServer server, final Duration startup) {
+        this.server = server;
+        this.startup = startup;
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        TimeGauge.builder("omp.opcua.startup", this.startup, TimeUnit.NANOSECONDS, Duration::toNanos)
+                .description("Time from starting the server until all namespaces got populated")
+                .register(registry);
+
+        Gauge.builder("omp.opcua.sessions", this.server, s -> s.getSessionManager().getCurrentSessionCount().doubleValue())
+                .description("Current sessions")
+                .register(registry);
+
+        Gauge.builder("omp.opcua.subscriptions", this.server, s -> s.getSubscriptions().size())
+                .description("Current subscriptions")
+                .register(registry);
+
+        Gauge.builder("omp.opcua.publish.queue", this.server, ServerMetrics::publishQueueDepth)
+                .description("Publish requests waiting for notifications, over all sessions")
+                .register(registry);
+    }
+
+    private static double publishQueueDepth(final OpcUaServer server) {
+        long result = 0;
+        for (var session : server.getSessionManager().getAllSessions()) {
+            result += session.getSubscriptionManager().getPublishQueue().size();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,135 @@
+package org.omp.opcua.test.server;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.milo.opcua.sdk.server.api.AsyncOperationContext;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the handling of service requests, and with it the attribute filter chains of the nodes, on threads of its
+ * own, instead of the threads of Milo calling the namespace.
+ * <p>
+ * Virtual threads get created through reflection, so the server still builds and runs on Java 11, and only the
+ * {@link ExecutionConfiguration.Mode#VIRTUAL virtual} mode requires Java 21.
+ */
+public final class ServiceExecutor implements Executor, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ServiceExecutor.class);
+
+    /**
+     * Runs requests right away, on the calling thread.
+     */
+    public static final ServiceExecutor INLINE = new ServiceExecutor(ExecutionConfiguration.Mode.INLINE, null);
+
+    private static final String CARRIER_PARALLELISM = "jdk.virtualThreadScheduler.parallelism";
+    private static final String CARRIER_MAX_POOL_SIZE = "jdk.virtualThreadScheduler.maxPoolSize";
+
+    private final ExecutionConfiguration.Mode mode;
+    private final ExecutorService executor;
+
+    private ServiceExecutor(final ExecutionConfiguration.Mode mode, final ExecutorService executor) {
+        this.mode = mode;
+        this.executor = executor;
+    }
+
+    public static ServiceExecutor create(final ExecutionConfiguration configuration) {
+        var parallelism = Math.max(1, configuration.parallelism().orElse(Runtime.getRuntime().availableProcessors()));
+        return create(configuration.mode(), parallelism);
+    }
+
+    public static ServiceExecutor create(final ExecutionConfiguration.Mode mode, final int parallelism) {
+        switch (mode) {
+            case PLATFORM:
+                LOG.info("Handling requests on {} platform threads", parallelism);
+                var threads = new AtomicInteger();
+                return new ServiceExecutor(mode, Executors.newFixedThreadPool(parallelism, r -> {
+                    var thread = new Thread(r, "service-worker-" + threads.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+            case VIRTUAL:
+                LOG.info("Handling requests on virtual threads, using {} carrier threads", parallelism);
+                return new ServiceExecutor(mode, createVirtual(parallelism));
+            case INLINE:
+            default:
+                return INLINE;
+        }
+    }
+
+    /**
+     * Create a virtual thread per task executor. The carrier threads of virtual threads are shared by the whole JVM,
+     * and get configured with system properties, which only take effect before the first virtual thread starts. An
+     * explicit {@code -Djdk.virtualThreadScheduler.parallelism} takes precedence.
+     */
+    private static ExecutorService createVirtual(final int parallelism) {
+        if (System.getProperty(CARRIER_PARALLELISM) == null) {
+            System.setProperty(CARRIER_PARALLELISM, Integer.toString(parallelism));
+            if (System.getProperty(CARRIER_MAX_POOL_SIZE) == null) {
+                // the default of 256 limits the parallelism too
+                System.setProperty(CARRIER_MAX_POOL_SIZE, Integer.toString(Math.max(256, parallelism)));
+            }
+        }
+
+        try {
+            var factory = MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+            return (ExecutorService) factory.invoke();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or later, running on " + Runtime.version(), e);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to create virtual thread executor", e);
+        }
+    }
+
+    public ExecutionConfiguration.Mode getMode() {
+        return this.mode;
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        if (this.executor == null) {
+            task.run();
+        } else {
+            this.executor.execute(task);
+        }
+    }
+
+    /**
+     * Handle a request, failing the operation if the handling fails, or can't get started.
+     *
+     * @param context The operation the task completes.
+     * @param task The handling of the request.
+     */
+    public void execute(final AsyncOperationContext<?> context, final Runnable task) {
+        if (this.executor == null) {
+            task.run();
+            return;
+        }
+
+        try {
+            this.executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOG.warn("Failed to handle request", e);
+                    context.failure(StatusCodes.Bad_InternalError);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            context.failure(StatusCodes.Bad_ResourceUnavailable);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.omp.opcua.test.server;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.regex.Pattern;
+
+/**
+ * A slice of the nodes, served by one of multiple replicas.
+ * <p>
+ * Configured numbers of instances and devices are totals, across all shards. Each shard serves a contiguous range of
+ * them, and keeps their global numbers in node IDs and names, so a node has the same ID no matter which shard serves
+ * it.
+ */
+public final class Shard {
+
+    /**
+     * A single shard, serving all nodes.
+     */
+    public static final Shard ALL = new Shard(0, 1);
+
+    private static final Pattern ORDINAL = Pattern.compile("-(\\d+)$");
+
+    private final int index;
+    private final int count;
+
+    public Shard(final int index, final int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Shard count must be positive: " + count);
+        }
+        if (index < 0 || index >= count) {
+            throw new IllegalArgumentException(String.format("Shard index must be within [0, %s): %s", count, index));
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Resolve the shard of this server. Without an explicit index, the index is the ordinal at the end of the
+     * hostname, as assigned to the pods of a StatefulSet.
+     */
+    public static Shard of(final ShardConfiguration configuration) {
+        if (configuration.count() <= 1) {
+            return ALL;
+        }
+        if (configuration.index().isPresent()) {
+            return new Shard(configuration.index().getAsInt(), configuration.count());
+        }
+
+        var hostname = hostname();
+        var ordinal = ordinal(hostname);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException(String.format("Unable to derive the shard index from hostname '%s', configure it explicitly", hostname));
+        }
+        return new Shard(ordinal, configuration.count());
+    }
+
+    public int getIndex() {
+        return this.index;
+    }
+
+    public int getCount() {
+        return this.count;
+    }
+
+    public boolean isSharded() {
+        return this.count > 1;
+    }
+
+    /**
+     * The first item of this shard.
+     *
+     * @param total The total number of items, across all shards.
+     */
+    public int from(final int total) {
+        return (int) ((long) total * this.index / this.count);
+    }
+
+    /**
+     * The end of the items of this shard, exclusive.
+     *
+     * @param total The total number of items, across all shards.
+     */
+    public int to(final int total) {
+        return (int) ((long) total * (this.index + 1) / this.count);
+    }
+
+    @Override
+    public String toString() {
+        return this.index + " of " + this.count;
+    }
+
+    static String hostname() {
+        var hostname = System.getenv("HOSTNAME");
+        if (hostname != null && !hostname.isBlank()) {
+            return hostname;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "";
+        }
+    }
+
+    /**
+     * The ordinal at the end of a hostname, like {@code 2} of {@code milo-test-server-2}.
+     *
+     * @return The ordinal, or {@code -1} if the hostname doesn't end with one.
+     */
+    static int ordinal(final String hostname) {
+        var matcher = ORDINAL.matcher(hostname);
+        if (!matcher.find()) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(matcher.group(1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Replace the ordinal at the end of a hostname with an {@code {index}} placeholder.
+     */
+    static String template(final String hostname) {
+        return ORDINAL.matcher(hostname).replaceFirst("-{index}");
+    }
+}
@@ -0,0 +1,31 @@
+package org.omp.opcua.test.server;
+
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+/**
+ * Splits the test and simulation nodes across multiple replicas, each of them serving only its {@link Shard}.
+ */
+@ConfigMapping(prefix = "omp.opcua.milo.shard", namingStrategy = ConfigMapping.NamingStrategy.VERBATIM)
+public interface ShardConfiguration {
+    /**
+     * The number of shards, {@code 1} to serve all nodes from a single server.
+     */
+    @WithDefault("1")
+    int count();
+
+    /**
+     * The index of this shard, defaults to the ordinal at the end of the hostname, like {@code milo-test-server-2}.
+     */
+    OptionalInt index();
+
+    /**
+     * The discovery URL of each shard, with an {@code {index}} placeholder, like
+     * {@code opc.tcp://milo-test-server-{index}.milo-test-server:12686/milo/discovery}. Defaults to the hostname of
+     * this server, with the ordinal replaced by the index.
+     */
+    Optional<String> discoveryUrl();
+}
@@ -0,0 +1,91 @@
+package org.omp.opcua.test.server;
+
+import java.util.ArrayList;
+import java.util.Set;
+
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.ApplicationType;
+import org.eclipse.milo.opcua.stack.core.types.structured.ApplicationDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.FindServersRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.FindServersResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.GetEndpointsRequest;
+import org.eclipse.milo.opcua.stack.server.services.DiscoveryServiceSet;
+import org.eclipse.milo.opcua.stack.server.services.ServiceRequest;
+import org.eclipse.milo.opcua.stack.server.services.ServiceRequestHandler;
+
+/**
+ * Discovery of a sharded server: {@code FindServers} lists the servers of all shards, so that a client can find all
+ * of them through any of them. {@code GetEndpoints} still returns the endpoints of this shard only.
+ * <p>
+ * The certificate of each shard has an application URI derived from the product URI and the index of the shard, so
+ * the other shards can be listed by their actual URIs. Clients should connect through the discovery URLs.
+ */
+final class ShardDiscoveryServiceSet implements DiscoveryServiceSet {
+
+    private final ServiceRequestHandler getEndpoints;
+    private final ApplicationDescription[] servers;
+
+    private ShardDiscoveryServiceSet(final ServiceRequestHandler getEndpoints, final ApplicationDescription[] servers) {
+        this.getEndpoints = getEndpoints;
+        this.servers = servers;
+    }
+
+    /**
+     * Replace the discovery services of a path. Must be called before the server starts.
+     *
+     * @param server The server.
+     * @param path The path of the discovery endpoint.
+     * @param shard The shard of this server.
+     * @param discoveryUrl The discovery URL of each shard, with an {@code {index}} placeholder.
+     */
+    static void register(final OpcUaServer server, final String path, final Shard shard, final String discoveryUrl) {
+        var stackServer = server.getStackServer();
+        var getEndpoints = stackServer.getServiceHandler(path, GetEndpointsRequest.TYPE_ID);
+
+        var servers = new ApplicationDescription[shard.getCount()];
+        for (int i = 0; i < servers.length; i++) {
+            var applicationUri = i == shard.getIndex()
+                    ? server.getConfig().getApplicationUri()
+                    : Server.PRODUCT_URI + ":shard:" + i;
+            servers[i] = new ApplicationDescription(
+                    applicationUri,
+                    Server.PRODUCT_URI,
+                    LocalizedText.english(String.format("%s (shard %s of %s)", Server.NAME, i, shard.getCount())),
+                    ApplicationType.Server,
+                    null,
+                    null,
+                    new String[]{discoveryUrl.replace("{index}", Integer.toString(i))}
+            );
+        }
+
+        stackServer.addServiceSet(path, new ShardDiscoveryServiceSet(getEndpoints, servers));
+    }
+
+    @Override
+    public void onFindServers(final ServiceRequest request) {
+        var serverUris = ((FindServersRequest) request.getRequest()).getServerUris();
+
+        ApplicationDescription[] result;
+        if (serverUris == null || serverUris.length == 0) {
+            result = this.servers;
+        } else {
+            var filter = Set.of(serverUris);
+            var filtered = new ArrayList<ApplicationDescription>();
+            for (var server : this.servers) {
+                if (filter.contains(server.getApplicationUri())) {
+                    filtered.add(server);
+                }
+            }
+            result = filtered.toArray(ApplicationDescription[]::new);
+        }
+
+        request.setResponse(new FindServersResponse(request.createResponseHeader(), result));
+    }
+
+    @Override
+    public void onGetEndpoints(final ServiceRequest request) throws UaException {
+        this.getEndpoints.handle(request);
+    }
+}
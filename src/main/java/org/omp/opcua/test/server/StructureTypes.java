@@ -0,0 +1,392 @@
+package org.omp.opcua.test.server;
+
+import java.lang.reflect.Array;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.dtd.DataTypeDictionaryManager;
+import org.eclipse.milo.opcua.stack.core.BuiltinDataType;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.UaSerializationException;
+import org.eclipse.milo.opcua.stack.core.serialization.SerializationContext;
+import org.eclipse.milo.opcua.stack.core.serialization.UaDecoder;
+import org.eclipse.milo.opcua.stack.core.serialization.UaEncoder;
+import org.eclipse.milo.opcua.stack.core.serialization.codecs.GenericDataTypeCodec;
+import org.eclipse.milo.opcua.stack.core.types.OpcUaDefaultBinaryEncoding;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExtensionObject;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UShort;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.StructureType;
+import org.eclipse.milo.opcua.stack.core.types.structured.EnumDefinition;
+import org.eclipse.milo.opcua.stack.core.types.structured.EnumDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.EnumField;
+import org.eclipse.milo.opcua.stack.core.types.structured.StructureDefinition;
+import org.eclipse.milo.opcua.stack.core.types.structured.StructureDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.StructureField;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.ubyte;
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+/**
+ * The structured test types of the {@code Struct} tree: a {@code DeviceState} enumeration, a {@code Measurement}
+ * structure, and a {@code Sample} structure, nesting one measurement, and an array of them as its history. Next to
+ * those, strings and byte strings of a configured size.
+ * <p>
+ * The data types get registered with the {@link DataTypeDictionaryManager}, so clients can decode them using the
+ * type dictionary. Structures get encoded to {@link ExtensionObject}s once, when they get generated, so reads and
+ * sampling of pooled values only copy the encoded body.
+ */
+final class StructureTypes {
+
+    private static final String[] STATES = {"Idle", "Running", "Fault", "Maintenance"};
+
+    private final OpcUaServer server;
+    private final UShort namespaceIndex;
+    private final TestConfiguration.Structures configuration;
+
+    private final NodeId stateTypeId;
+    private final NodeId measurementTypeId;
+    private final NodeId measurementEncodingId;
+    private final NodeId sampleTypeId;
+    private final NodeId sampleEncodingId;
+
+    private final Field[] measurementFields;
+    private final Field[] sampleFields;
+    private final TestNamespace.TestType[] types;
+
+    private enum Kind {
+        DOUBLE,
+        STRING,
+        BOOLEAN,
+        DATE_TIME,
+        ENUM,
+        BYTE_STRING,
+        STRUCT,
+        STRUCT_ARRAY,
+    }
+
+    private static final class Field {
+        final String name;
+        final Kind kind;
+        final NodeId dataTypeId;
+
+        Field(final String name, final Kind kind, final NodeId dataTypeId) {
+            this.name = name;
+            this.kind = kind;
+            this.dataTypeId = dataTypeId;
+        }
+
+        StructureField toStructureField() {
+            return new StructureField(
+                    this.name,
+                    LocalizedText.NULL_VALUE,
+                    this.dataTypeId,
+                    this.kind == Kind.STRUCT_ARRAY ? 1 : -1,
+                    null,
+                    uint(0),
+                    false
+            );
+        }
+    }
+
+    /**
+     * Encodes a structure, given as the values of its fields, in the order of the fields.
+     */
+    private static final class StructureCodec extends GenericDataTypeCodec<Object[]> {
+
+        private final Field[] fields;
+
+        StructureCodec(final Field[] fields) {
+            this.fields = fields;
+        }
+
+        @Override
+        public Class<Object[]> getType() {
+            return Object[].class;
+        }
+
+        @Override
+        public Object[] decode(final SerializationContext context, final UaDecoder decoder) throws UaSerializationException {
+            var values = new Object[this.fields.length];
+            for (int i = 0; i < this.fields.length; i++) {
+                var field = this.fields[i];
+                switch (field.kind) {
+                    case DOUBLE:
+                        values[i] = decoder.readDouble(field.name);
+                        break;
+                    case STRING:
+                        values[i] = decoder.readString(field.name);
+                        break;
+                    case BOOLEAN:
+                        values[i] = decoder.readBoolean(field.name);
+                        break;
+                    case DATE_TIME:
+                        values[i] = decoder.readDateTime(field.name);
+                        break;
+                    case ENUM:
+                        values[i] = decoder.readInt32(field.name);
+                        break;
+                    case BYTE_STRING:
+                        values[i] = decoder.readByteString(field.name);
+                        break;
+                    case STRUCT:
+                        values[i] = decoder.readStruct(field.name, field.dataTypeId);
+                        break;
+                    case STRUCT_ARRAY:
+                        values[i] = decoder.readStructArray(field.name, field.dataTypeId);
+                        break;
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public void encode(final SerializationContext context, final UaEncoder encoder, final Object[] values) throws UaSerializationException {
+            for (int i = 0; i < this.fields.length; i++) {
+                var field = this.fields[i];
+                switch (field.kind) {
+                    case DOUBLE:
+                        encoder.writeDouble(field.name, (Double) values[i]);
+                        break;
+                    case STRING:
+                        encoder.writeString(field.name, (String) values[i]);
+                        break;
+                    case BOOLEAN:
+                        encoder.writeBoolean(field.name, (Boolean) values[i]);
+                        break;
+                    case DATE_TIME:
+                        encoder.writeDateTime(field.name, (DateTime) values[i]);
+                        break;
+                    case ENUM:
+                        encoder.writeInt32(field.name, (Integer) values[i]);
+                        break;
+                    case BYTE_STRING:
+                        encoder.writeByteString(field.name, (ByteString) values[i]);
+                        break;
+                    case STRUCT:
+                        encoder.writeStruct(field.name, values[i], field.dataTypeId);
+                        break;
+                    case STRUCT_ARRAY:
+                        encoder.writeStructArray(field.name, (Object[]) values[i], field.dataTypeId);
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes an enumeration, as its {@code Int32} value.
+     */
+    private static final class EnumCodec extends GenericDataTypeCodec<Integer> {
+
+        @Override
+        public Class<Integer> getType() {
+            return Integer.class;
+        }
+
+        @Override
+        public Integer decode(final SerializationContext context, final UaDecoder decoder) throws UaSerializationException {
+            return decoder.readInt32(null);
+        }
+
+        @Override
+        public void encode(final SerializationContext context, final UaEncoder encoder, final Integer value) throws UaSerializationException {
+            encoder.writeInt32(null, value);
+        }
+    }
+
+    private static final class StructureTestType implements TestNamespace.TestType {
+        private final String name;
+        private final NodeId typeId;
+        private final IntFunction<Object> arrayCreator;
+        private final Function<RandomSource, Object> generator;
+
+        StructureTestType(final String name,
+                          final NodeId typeId,
+                          final IntFunction<Object> arrayCreator,
+                          final Function<RandomSource, Object> generator) {
+            this.name = name;
+            this.typeId = typeId;
+            this.arrayCreator = arrayCreator;
+            this.generator = generator;
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public NodeId getTypeId() {
+            return this.typeId;
+        }
+
+        @Override
+        public DataValue next(final RandomSource random) {
+            return new DataValue(new Variant(this.generator.apply(random)));
+        }
+
+        @Override
+        public DataValue nextArray(final RandomSource random, final int count) {
+            return new DataValue(new Variant(array(random, count)));
+        }
+
+        @Override
+        public DataValue nextPrimitiveArray(final RandomSource random, final int count) {
+            return nextArray(random, count);
+        }
+
+        @Override
+        public DataValue nextArray(final RandomSource random, final int[] shape, final boolean primitive) {
+            return new DataValue(new Variant(TestNamespace.shaped(shape, 0, count -> array(random, count))));
+        }
+
+        private Object array(final RandomSource random, final int count) {
+            var value = this.arrayCreator.apply(count);
+            for (int i = 0; i < count; i++) {
+                Array.set(value, i, this.generator.apply(random));
+            }
+            return value;
+        }
+    }
+
+    StructureTypes(final OpcUaServer server, final UShort namespaceIndex, final TestConfiguration.Structures configuration) {
+        this.server = server;
+        this.namespaceIndex = namespaceIndex;
+        this.configuration = configuration;
+
+        this.stateTypeId = new NodeId(namespaceIndex, "DataType.DeviceState");
+        this.measurementTypeId = new NodeId(namespaceIndex, "DataType.Measurement");
+        this.measurementEncodingId = new NodeId(namespaceIndex, "DataType.Measurement.BinaryEncoding");
+        this.sampleTypeId = new NodeId(namespaceIndex, "DataType.Sample");
+        this.sampleEncodingId = new NodeId(namespaceIndex, "DataType.Sample.BinaryEncoding");
+
+        this.measurementFields = new Field[]{
+                new Field("value", Kind.DOUBLE, Identifiers.Double),
+                new Field("unit", Kind.STRING, Identifiers.String),
+                new Field("state", Kind.ENUM, this.stateTypeId),
+                new Field("valid", Kind.BOOLEAN, Identifiers.Boolean),
+                new Field("timestamp", Kind.DATE_TIME, Identifiers.DateTime),
+        };
+        this.sampleFields = new Field[]{
+                new Field("name", Kind.STRING, Identifiers.String),
+                new Field("current", Kind.STRUCT, this.measurementTypeId),
+                new Field("history", Kind.STRUCT_ARRAY, this.measurementTypeId),
+                new Field("payload", Kind.BYTE_STRING, Identifiers.ByteString),
+        };
+
+        this.types = new TestNamespace.TestType[]{
+                new StructureTestType("State", this.stateTypeId, Integer[]::new, this::nextState),
+                new StructureTestType("Text", Identifiers.String, String[]::new, this::nextString),
+                new StructureTestType("Blob", Identifiers.ByteString, ByteString[]::new, this::nextByteString),
+                new StructureTestType("Measurement", this.measurementTypeId, ExtensionObject[]::new,
+                        random -> encode(nextMeasurement(random), this.measurementEncodingId)),
+                new StructureTestType("Sample", this.sampleTypeId, ExtensionObject[]::new,
+                        random -> encode(nextSample(random), this.sampleEncodingId)),
+        };
+    }
+
+    TestNamespace.TestType[] getTypes() {
+        return this.types;
+    }
+
+    /**
+     * Register the data types. Must be called after the dictionary manager started, and before values get generated.
+     */
+    void register(final DataTypeDictionaryManager dictionaryManager) {
+        dictionaryManager.registerEnumCodec(new EnumCodec().asBinaryCodec(), "DeviceState", this.stateTypeId);
+
+        var states = new EnumField[STATES.length];
+        for (int i = 0; i < STATES.length; i++) {
+            states[i] = new EnumField((long) i, LocalizedText.english(STATES[i]), LocalizedText.NULL_VALUE, STATES[i]);
+        }
+        dictionaryManager.registerEnumDescription(new EnumDescription(
+                this.stateTypeId,
+                new QualifiedName(this.namespaceIndex, "DeviceState"),
+                new EnumDefinition(states),
+                ubyte(BuiltinDataType.Int32.getTypeId())
+        ));
+
+        // nested types first
+        registerStructure(dictionaryManager, "Measurement", this.measurementTypeId, this.measurementEncodingId, this.measurementFields);
+        registerStructure(dictionaryManager, "Sample", this.sampleTypeId, this.sampleEncodingId, this.sampleFields);
+    }
+
+    private void registerStructure(
+            final DataTypeDictionaryManager dictionaryManager,
+            final String name,
+            final NodeId dataTypeId,
+            final NodeId encodingId,
+            final Field[] fields) {
+
+        dictionaryManager.registerStructureCodec(new StructureCodec(fields).asBinaryCodec(), name, dataTypeId, encodingId);
+
+        var structureFields = new StructureField[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            structureFields[i] = fields[i].toStructureField();
+        }
+        var definition = new StructureDefinition(encodingId, Identifiers.Structure, StructureType.Structure, structureFields);
+        dictionaryManager.registerStructureDescription(
+                new StructureDescription(dataTypeId, new QualifiedName(this.namespaceIndex, name), definition),
+                encodingId
+        );
+    }
+
+    private ExtensionObject encode(final Object[] value, final NodeId encodingId) {
+        return ExtensionObject.encode(this.server.getSerializationContext(), value, encodingId, OpcUaDefaultBinaryEncoding.getInstance());
+    }
+
+    private Integer nextState(final RandomSource random) {
+        return (int) Math.floorMod(random.nextLong(), (long) STATES.length);
+    }
+
+    private String nextString(final RandomSource random) {
+        var result = new char[Math.max(0, this.configuration.stringLength())];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (char) ('a' + Math.floorMod(random.nextLong(), 26L));
+        }
+        return new String(result);
+    }
+
+    private ByteString nextByteString(final RandomSource random) {
+        var result = new byte[Math.max(0, this.configuration.byteStringSize())];
+        for (int i = 0; i < result.length; i += Long.BYTES) {
+            var bits = random.nextLong();
+            for (int j = i; j < Math.min(result.length, i + Long.BYTES); j++) {
+                result[j] = (byte) bits;
+                bits >>>= 8;
+            }
+        }
+        return ByteString.of(result);
+    }
+
+    private Object[] nextMeasurement(final RandomSource random) {
+        return new Object[]{
+                random.nextDouble() * 100,
+                nextString(random),
+                nextState(random),
+                random.nextBoolean(),
+                DateTime.now(),
+        };
+    }
+
+    private Object[] nextSample(final RandomSource random) {
+        var history = new Object[Math.max(0, this.configuration.arraySize())];
+        for (int i = 0; i < history.length; i++) {
+            history[i] = nextMeasurement(random);
+        }
+        return new Object[]{
+                nextString(random),
+                nextMeasurement(random),
+                history,
+                nextByteString(random),
+        };
+    }
+}
@@ -1,10 +1,109 @@
 package org.omp.opcua.test.server;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+
 import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
 
 @ConfigMapping(prefix = "omp.opcua.milo.test",  namingStrategy = ConfigMapping.NamingStrategy.VERBATIM)
 public interface TestConfiguration {
      int numberOfSimple();
      int arraySize();
      int numberOfArray();
+
+     /**
+      * The dimensions of the array values, like {@code 100,100} for 100 by 100 matrices, instead of one dimension of
+      * {@link #arraySize()} elements.
+      */
+     Optional<List<Integer>> arrayDimensions();
+
+     /**
+      * Generate array values as primitive arrays ({@code long[]}, {@code double[]}, {@code boolean[]}) instead of
+      * boxed arrays. The encoded result is the same.
+      */
+     @WithDefault("true")
+     boolean primitiveArrays();
+
+     /**
+      * A fixed seed for the generated values, to make runs reproducible.
+      */
+     OptionalLong seed();
+
+     Pool pool();
+
+     Lazy lazy();
+
+     Structures structures();
+
+     PopulationConfiguration population();
+
+     /**
+      * Pre-generated values, instead of generating a new value on every read.
+      */
+     interface Pool {
+          @WithDefault("false")
+          boolean enabled();
+
+          /**
+           * The number of values pre-generated per test type.
+           */
+          @WithDefault("1024")
+          int size();
+
+          /**
+           * The period after which all values of a pool get re-generated. Pools never get re-generated with a
+           * period below a millisecond, like {@code 0s}.
+           */
+          @WithDefault("1s")
+          Duration refreshPeriod();
+     }
+
+     /**
+      * Create the nodes of the {@code Single} and {@code Array} trees on demand, instead of at startup.
+      */
+     interface Lazy {
+          @WithDefault("false")
+          boolean enabled();
+
+          /**
+           * The number of nodes kept in memory, in addition to monitored nodes.
+           */
+          @WithDefault("100000")
+          int cacheSize();
+     }
+
+     /**
+      * The {@code Struct} tree, with structured values and strings, see {@link StructureTypes}.
+      */
+     interface Structures {
+          @WithDefault("0")
+          int numberOfInstances();
+
+          /**
+           * The characters of generated strings.
+           */
+          @WithDefault("16")
+          int stringLength();
+
+          /**
+           * The bytes of generated byte strings.
+           */
+          @WithDefault("64")
+          int byteStringSize();
+
+          /**
+           * The elements of arrays of structures.
+           */
+          @WithDefault("10")
+          int arraySize();
+
+          /**
+           * The number of values pre-encoded per type, which reads rotate through.
+           */
+          @WithDefault("256")
+          int poolSize();
+     }
 }
@@ -1,19 +1,34 @@
 package org.omp.opcua.test.server;
 
 import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
 import java.util.function.Supplier;
 
 import org.eclipse.milo.opcua.sdk.core.AccessLevel;
 import org.eclipse.milo.opcua.sdk.core.Reference;
+import org.eclipse.milo.opcua.sdk.core.ValueRanks;
 import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.api.AddressSpaceFilter;
 import org.eclipse.milo.opcua.sdk.server.api.DataItem;
 import org.eclipse.milo.opcua.sdk.server.api.ManagedNamespaceWithLifecycle;
 import org.eclipse.milo.opcua.sdk.server.api.MonitoredItem;
+import org.eclipse.milo.opcua.sdk.server.api.SimpleAddressSpaceFilter;
+import org.eclipse.milo.opcua.sdk.server.api.services.AttributeServices.ReadContext;
+import org.eclipse.milo.opcua.sdk.server.api.services.AttributeServices.WriteContext;
+import org.eclipse.milo.opcua.sdk.server.api.services.ViewServices.BrowseContext;
 import org.eclipse.milo.opcua.sdk.server.dtd.DataTypeDictionaryManager;
 import org.eclipse.milo.opcua.sdk.server.nodes.UaFolderNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNodeContext;
 import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
 import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilters;
 import org.eclipse.milo.opcua.sdk.server.util.SubscriptionModel;
@@ -24,38 +39,71 @@ import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
 import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
 import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
 import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.eclipse.milo.opcua.stack.core.types.structured.ViewDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.WriteValue;
+
+import io.micrometer.core.instrument.MeterRegistry;
 
 public class TestNamespace extends ManagedNamespaceWithLifecycle {
 
     public static final String NAMESPACE_URI = "urn:omp:milo:test-namespace";
-    private static final Random R = new Random();
 
     private final TestConfiguration configuration;
+    private final Shard shard;
+    private final ServiceExecutor executor;
+    private final RandomSource random;
     private final DataTypeDictionaryManager dictionaryManager;
     private final SubscriptionModel subscriptionModel;
-
-    private interface TestType {
+    private final NamespaceMetrics metrics;
+    private final List<TestTree> trees;
+    private final LazyTestAddressSpace lazyAddressSpace;
+    private final AddressSpaceFilter filter;
+    private final NodePopulator populator;
+    private final MonitoredNodes monitoredNodes;
+    private final StructureTypes structureTypes;
+    /**
+     * Value pools, by tree prefix and type name, like {@code Single/Int64}.
+     */
+    private final Map<String, ValuePool> pools = new ConcurrentHashMap<>();
+    private ScheduledExecutorService poolExecutor;
+
+    interface TestType {
         String getName();
         NodeId getTypeId();
 
-        DataValue next();
-        DataValue nextArray(int count);
+        DataValue next(RandomSource random);
+        DataValue nextArray(RandomSource random, int count);
+        DataValue nextPrimitiveArray(RandomSource random, int count);
+
+        /**
+         * Generate an array of the given shape, as nested arrays for more than one dimension.
+         */
+        DataValue nextArray(RandomSource random, int[] shape, boolean primitive);
+    }
+
+    private interface ArrayGenerator {
+        Object generate(RandomSource random, int count);
     }
 
     private static class SimpleTestType implements TestType {
         private final String name;
         private final NodeId typeId;
-        private final Supplier<Object> generator;
+        private final Function<RandomSource, Object> generator;
         private final Function<Integer, Object> arrayCreator;
+        private final ArrayGenerator primitiveArrayGenerator;
 
         SimpleTestType(final String name,
                        final NodeId typeId,
                        final Function<Integer, Object> arrayCreator,
-                       final Supplier<Object> generator) {
+                       final Function<RandomSource, Object> generator,
+                       final ArrayGenerator primitiveArrayGenerator) {
             this.name = name;
             this.typeId = typeId;
             this.arrayCreator = arrayCreator;
             this.generator = generator;
+            this.primitiveArrayGenerator = primitiveArrayGenerator;
         }
 
         public String getName() {
@@ -66,16 +114,30 @@ public class TestNamespace extends ManagedNamespaceWithLifecycle {
             return this.typeId;
         }
 
-        public DataValue next() {
-            return new DataValue(new Variant(this.generator.get()));
+        public DataValue next(RandomSource random) {
+            return new DataValue(new Variant(this.generator.apply(random)));
+        }
+
+        public DataValue nextArray(RandomSource random, int count) {
+            return new DataValue(new Variant(boxedArray(random, count)));
         }
 
-        public DataValue nextArray(int count) {
+        public DataValue nextPrimitiveArray(RandomSource random, int count) {
+            return new DataValue(new Variant(this.primitiveArrayGenerator.generate(random, count)));
+        }
+
+        public DataValue nextArray(RandomSource random, int[] shape, boolean primitive) {
+            return new DataValue(new Variant(shaped(shape, 0, count -> primitive
+                    ? this.primitiveArrayGenerator.generate(random, count)
+                    : boxedArray(random, count))));
+        }
+
+        private Object boxedArray(RandomSource random, int count) {
             var value = this.arrayCreator.apply(count);
             for (int i = 0; i < count; i++) {
-                Array.set(value, i, this.generator.get());
+                Array.set(value, i, this.generator.apply(random));
             }
-            return new DataValue(new Variant(value));
+            return value;
         }
     }
 
@@ -101,33 +163,87 @@ public class TestNamespace extends ManagedNamespaceWithLifecycle {
         }
 
         @Override
-        public DataValue next() {
+        public DataValue next(RandomSource random) {
             return new DataValue.Builder()
                     .setStatus(StatusCode.BAD)
                     .build();
         }
 
         @Override
-        public DataValue nextArray(int count) {
+        public DataValue nextArray(RandomSource random, int count) {
             return new DataValue.Builder()
                     .setStatus(StatusCode.BAD)
                     .build();
         }
+
+        @Override
+        public DataValue nextPrimitiveArray(RandomSource random, int count) {
+            return nextArray(random, count);
+        }
+
+        @Override
+        public DataValue nextArray(RandomSource random, int[] shape, boolean primitive) {
+            return nextArray(random, 0);
+        }
     }
 
-    private static final TestType[] SINGLE_TYPES = new TestType[]{
-            new SimpleTestType("Int64", Identifiers.Int64, Long[]::new, R::nextLong),
-            new SimpleTestType("Float", Identifiers.Float, Double[]::new, R::nextDouble),
-            new SimpleTestType("Boolean", Identifiers.Boolean, Boolean[]::new, R::nextBoolean),
+    /**
+     * Build nested arrays of a shape, from the innermost arrays, like {@code long[][]} for two dimensions.
+     */
+    static Object shaped(final int[] shape, final int dimension, final IntFunction<Object> innermost) {
+        if (dimension == shape.length - 1) {
+            return innermost.apply(shape[dimension]);
+        }
+
+        var first = shaped(shape, dimension + 1, innermost);
+        var result = Array.newInstance(first.getClass(), shape[dimension]);
+        for (int i = 0; i < shape[dimension]; i++) {
+            Array.set(result, i, i == 0 ? first : shaped(shape, dimension + 1, innermost));
+        }
+        return result;
+    }
+
+    private static long[] nextLongs(RandomSource random, int count) {
+        var result = new long[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = random.nextLong();
+        }
+        return result;
+    }
+
+    private static double[] nextDoubles(RandomSource random, int count) {
+        var result = new double[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = random.nextDouble();
+        }
+        return result;
+    }
+
+    private static boolean[] nextBooleans(RandomSource random, int count) {
+        var result = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = random.nextBoolean();
+        }
+        return result;
+    }
+
+    static final TestType[] SINGLE_TYPES = new TestType[]{
+            new SimpleTestType("Int64", Identifiers.Int64, Long[]::new, RandomSource::nextLong, TestNamespace::nextLongs),
+            new SimpleTestType("Float", Identifiers.Float, Double[]::new, RandomSource::nextDouble, TestNamespace::nextDoubles),
+            new SimpleTestType("Boolean", Identifiers.Boolean, Boolean[]::new, RandomSource::nextBoolean, TestNamespace::nextBooleans),
             new ErrorTestType("Error", Identifiers.Float),
     };
 
     // Array types, for now we use the same as the single types.
     private static final TestType[] ARRAY_TYPES = SINGLE_TYPES;
 
-    TestNamespace(final OpcUaServer server, final TestConfiguration configuration) {
+    TestNamespace(final OpcUaServer server, final TestConfiguration configuration, final Shard shard, final ServiceExecutor executor, final MeterRegistry registry) {
         super(server, NAMESPACE_URI);
         this.configuration = configuration;
+        this.shard = shard;
+        this.executor = executor;
+        this.metrics = new NamespaceMetrics(registry, "test");
+        this.random = RandomSource.root("test", configuration.seed());
 
         this.subscriptionModel = new SubscriptionModel(server, this);
         this.dictionaryManager = new DataTypeDictionaryManager(getNodeContext(), NAMESPACE_URI);
@@ -135,13 +251,113 @@ public class TestNamespace extends ManagedNamespaceWithLifecycle {
         getLifecycleManager().addLifecycle(this.dictionaryManager);
         getLifecycleManager().addLifecycle(this.subscriptionModel);
 
+        this.monitoredNodes = new MonitoredNodes(this::observedChanged);
+        this.structureTypes = new StructureTypes(server, getNamespaceIndex(), configuration.structures());
+        this.trees = createTrees();
+        this.populator = new NodePopulator("test", getNodeContext(), configuration.population());
+
+        if (configuration.lazy().enabled()) {
+            this.lazyAddressSpace = new LazyTestAddressSpace(server, this, this.trees, this.metrics, configuration.lazy().cacheSize());
+            this.filter = SimpleAddressSpaceFilter.create(nodeId ->
+                    nodeId.getNamespaceIndex().equals(getNamespaceIndex()) && !this.lazyAddressSpace.handles(nodeId));
+            getLifecycleManager().addLifecycle(this.lazyAddressSpace);
+            LazyBrowses.register(server, this.lazyAddressSpace);
+        } else {
+            this.lazyAddressSpace = null;
+            this.filter = super.getFilter();
+        }
+
         getLifecycleManager().addStartupTask(this::populateNamespace);
+        getLifecycleManager().addShutdownTask(this::stopPools);
+    }
+
+    @Override
+    public AddressSpaceFilter getFilter() {
+        // the super constructor may already call this
+        return this.filter != null ? this.filter : super.getFilter();
+    }
+
+    ServiceExecutor getExecutor() {
+        return this.executor;
+    }
+
+    MonitoredNodes getMonitoredNodes() {
+        return this.monitoredNodes;
+    }
+
+    /**
+     * Defer refreshing the value pools of types no one observes, see {@link ValuePool#refreshIfObserved()}. Without
+     * pools, values only get generated when they get read or sampled anyway.
+     */
+    private void observedChanged(final NodeId nodeId, final boolean observed) {
+        if (this.pools.isEmpty() || !(nodeId.getIdentifier() instanceof String)) {
+            return;
+        }
+        // OMP/<prefix>/<instance>/<type>
+        var id = (String) nodeId.getIdentifier();
+        var instance = id.indexOf('/', 4);
+        var type = instance < 0 ? -1 : id.indexOf('/', instance + 1);
+        if (!id.startsWith("OMP/") || type < 0) {
+            return;
+        }
+        var pool = this.pools.get(id.substring(4, instance) + "/" + id.substring(type + 1));
+        if (pool != null) {
+            pool.setObserved(observed);
+        }
+    }
+
+    private void stopPools() {
+        if (this.poolExecutor != null) {
+            this.poolExecutor.shutdown();
+        }
+    }
+
+    private List<TestTree> createTrees() {
+        var shape = arrayShape();
+        var primitive = this.configuration.primitiveArrays();
+        var simple = this.configuration.numberOfSimple();
+        var array = this.configuration.numberOfArray();
+        var structures = this.configuration.structures();
+        var struct = structures.numberOfInstances();
+
+        var trees = new ArrayList<TestTree>(List.of(
+                new TestTree("Single", SINGLE_TYPES, this.shard.from(simple), this.shard.to(simple), null, primitive,
+                        pooled("Single", (t, r) -> generator(r, t::next))),
+                new TestTree("Array", ARRAY_TYPES, this.shard.from(array), this.shard.to(array), shape, primitive,
+                        pooled("Array", (t, r) -> generator(r, random -> t.nextArray(random, shape, primitive))))
+        ));
+        if (struct > 0) {
+            // always pooled, so that structures get encoded once, not on every read
+            trees.add(new TestTree("Struct", this.structureTypes.getTypes(), this.shard.from(struct), this.shard.to(struct), null, primitive,
+                    pooled("Struct", (t, r) -> generator(r, t::next), structures.poolSize())));
+        }
+        return List.copyOf(trees);
+    }
+
+    private int[] arrayShape() {
+        var dimensions = this.configuration.arrayDimensions();
+        if (dimensions.isEmpty()) {
+            return new int[]{Math.max(0, this.configuration.arraySize())};
+        }
+
+        var shape = dimensions.get().stream().mapToInt(Integer::intValue).toArray();
+        if (shape.length == 0 || Arrays.stream(shape).anyMatch(d -> d <= 0)) {
+            throw new IllegalArgumentException("Array dimensions must be positive: " + dimensions.get());
+        }
+        return shape;
     }
 
     private void populateNamespace() {
+        this.structureTypes.register(this.dictionaryManager);
+
         var base = createBaseFolder();
-        populateSingle(base, SINGLE_TYPES, this.configuration.numberOfSimple());
-        populateArray(base, ARRAY_TYPES, this.configuration.numberOfArray(), this.configuration.arraySize());
+        for (var tree : this.trees) {
+            if (this.lazyAddressSpace != null) {
+                this.lazyAddressSpace.populate(base.getNodeId(), tree);
+            } else {
+                populateType(base, tree);
+            }
+        }
     }
 
     private UaFolderNode createBaseFolder() {
@@ -164,84 +380,219 @@ public class TestNamespace extends ManagedNamespaceWithLifecycle {
         return folderNode;
     }
 
-    private static UInteger[] toDimensions(int dimensions) {
-        if (dimensions <= 0) {
+    private static UInteger[] toDimensions(final int[] shape) {
+        if (shape == null) {
             return null;
-        } else {
-            return new UInteger[]{UInteger.valueOf(dimensions)};
         }
+
+        var result = new UInteger[shape.length];
+        for (int i = 0; i < shape.length; i++) {
+            result[i] = UInteger.valueOf(shape[i]);
+        }
+        return result;
     }
 
-    private void populateType(
-            final UaFolderNode base,
-            final String prefix,
-            final TestType[] types,
-            final int instances,
-            final int dimensions,
-            final Function<TestType, Supplier<DataValue>> generator) {
+    /**
+     * A tree of test instances, like {@code OMP/Single}, with one variable per test type in each instance.
+     * <p>
+     * The tree holds the instances of this {@link Shard}, from {@link #from} to {@link #to}, exclusive. The values of
+     * array trees have a {@link #shape}, scalar trees have none.
+     */
+    static final class TestTree {
+        final String prefix;
+        final TestType[] types;
+        final int from;
+        final int to;
+        final int[] shape;
+        final boolean primitive;
+        final UInteger[] dimensions;
+        final BiFunction<TestType, RandomSource, Supplier<DataValue>> generator;
+
+        TestTree(final String prefix,
+                 final TestType[] types,
+                 final int from,
+                 final int to,
+                 final int[] shape,
+                 final boolean primitive,
+                 final BiFunction<TestType, RandomSource, Supplier<DataValue>> generator) {
+            this.prefix = prefix;
+            this.types = types;
+            this.from = from;
+            this.to = to;
+            this.shape = shape;
+            this.primitive = primitive;
+            this.dimensions = toDimensions(shape);
+            this.generator = generator;
+        }
 
-        var folder = new UaFolderNode(
-                getNodeContext(),
-                newNodeId("OMP/" + prefix),
-                newQualifiedName(prefix + "Type"),
-                LocalizedText.english(prefix + "Type")
+        int size() {
+            return this.to - this.from;
+        }
+
+        String instanceName(final int instance) {
+            return NodePopulator.zeroPadded(this.prefix, instance, 6);
+        }
+    }
+
+    UaFolderNode createTypeFolder(final UaNodeContext context, final TestTree tree) {
+        return new UaFolderNode(
+                context,
+                newNodeId("OMP/" + tree.prefix),
+                newQualifiedName(tree.prefix + "Type"),
+                LocalizedText.english(tree.prefix + "Type")
         );
-        getNodeManager().addNode(folder);
-        base.addOrganizes(folder);
+    }
 
-        var dim = toDimensions(dimensions);
+    UaFolderNode createInstanceFolder(final UaNodeContext context, final TestTree tree, final String name) {
+        return new UaFolderNode(
+                context,
+                newNodeId("OMP/" + tree.prefix + "/" + name),
+                newQualifiedName(name),
+                instanceDisplayName(tree, name)
+        );
+    }
 
-        for (int i = 0; i < instances; i++) {
-            var name = String.format("%s%06d", prefix, i);
+    LocalizedText instanceDisplayName(final TestTree tree, final String name) {
+        return LocalizedText.english(tree.prefix + "Type(" + name + ")");
+    }
 
-            var instanceFolder = new UaFolderNode(
-                    getNodeContext(),
-                    newNodeId("OMP/" + prefix + "/" + name),
-                    newQualifiedName(name),
-                    LocalizedText.english(String.format("%sType(%s)", prefix, name))
+    UaVariableNode createVariable(final UaNodeContext context, final TestTree tree, final String name, final TestType t) {
+        var nodeId = "OMP/" + tree.prefix + "/" + name + "/" + t.getName();
+        var node = new UaVariableNode.UaVariableNodeBuilder(context)
+                .setNodeId(newNodeId(nodeId))
+                .setAccessLevel(AccessLevel.READ_ONLY)
+                .setUserAccessLevel(AccessLevel.READ_ONLY)
+                .setBrowseName(newQualifiedName(t.getName()))
+                .setDisplayName(LocalizedText.english(t.getName()))
+                .setDataType(t.getTypeId())
+                .setValueRank(tree.shape != null ? tree.shape.length : ValueRanks.Scalar)
+                .setArrayDimensions(tree.dimensions)
+                .setTypeDefinition(Identifiers.BaseDataVariableType)
+                .build();
+
+        var random = this.random.derive(nodeId.hashCode());
+
+        if (tree.shape != null && !this.configuration.pool().enabled()) {
+            // generate index ranges only, pooled values are cheap to slice
+            node.getFilterChain().addLast(
+                    this.metrics.timing(),
+                    new IndexRangeReads.ArrayValue(t, random, tree.shape, tree.primitive)
             );
-            getNodeManager().addNode(instanceFolder);
-            folder.addOrganizes(instanceFolder);
+            return node;
+        }
 
-            for (TestType t : types) {
+        var gen = tree.generator.apply(t, random);
 
-                var node = new UaVariableNode.UaVariableNodeBuilder(getNodeContext())
-                        .setNodeId(newNodeId("OMP/" + prefix + "/" + name + "/" + t.getName()))
-                        .setAccessLevel(AccessLevel.READ_ONLY)
-                        .setUserAccessLevel(AccessLevel.READ_ONLY)
-                        .setBrowseName(newQualifiedName(t.getName()))
-                        .setDisplayName(LocalizedText.english(t.getName()))
-                        .setDataType(t.getTypeId())
-                        .setArrayDimensions(dim)
-                        .setTypeDefinition(Identifiers.BaseDataVariableType)
-                        .build();
+        node.getFilterChain().addLast(
+                this.metrics.timing(),
+                AttributeFilters.getValue(
+                        ctx -> gen.get()
+                )
+        );
 
-                var gen = generator.apply(t);
+        return node;
+    }
 
-                node.getFilterChain().addLast(
-                        AttributeFilters.getValue(
-                                ctx -> gen.get()
-                        )
-                );
+    private void populateType(final UaFolderNode base, final TestTree tree) {
 
-                getNodeManager().addNode(node);
-                instanceFolder.addOrganizes(node);
+        var folder = createTypeFolder(getNodeContext(), tree);
+        getNodeManager().addNode(folder);
+        base.addOrganizes(folder);
 
+        this.populator.populate(tree.prefix, tree.size(), (context, from, to) -> {
+            for (int i = from; i < to; i++) {
+                var name = tree.instanceName(tree.from + i);
+
+                var instanceFolder = createInstanceFolder(context, tree, name);
+                context.getNodeManager().addNode(instanceFolder);
+                // add the reference through the instance, which batches it, and adds the forward reference too
+                instanceFolder.addReference(new Reference(
+                        instanceFolder.getNodeId(),
+                        Identifiers.Organizes,
+                        folder.getNodeId().expanded(),
+                        false
+                ));
+
+                for (TestType t : tree.types) {
+                    var node = createVariable(context, tree, name, t);
+                    context.getNodeManager().addNode(node);
+                    instanceFolder.addOrganizes(node);
+                }
+
+            }
+        });
+    }
+
+    private static Supplier<DataValue> generator(final RandomSource random, final Function<RandomSource, DataValue> generator) {
+        // random sources aren't thread-safe, but are per node, so this lock is hardly ever contended
+        return () -> {
+            synchronized (random) {
+                return generator.apply(random);
             }
+        };
+    }
 
+    /**
+     * Wrap a generator with a pool of pre-generated values, if pools are enabled.
+     * <p>
+     * All nodes of the same type share one pool, but each node gets its own cursor.
+     */
+    private BiFunction<TestType, RandomSource, Supplier<DataValue>> pooled(final String prefix, final BiFunction<TestType, RandomSource, Supplier<DataValue>> generator) {
+        var configuration = this.configuration.pool();
+        if (!configuration.enabled()) {
+            return generator;
         }
+        return pooled(prefix, generator, configuration.size());
     }
 
-    private void populateSingle(final UaFolderNode base, TestType[] types, final int instances) {
-        populateType(base, "Single", types, instances, 0, t -> t::next);
+    /**
+     * Wrap a generator with a pool of pre-generated values, of the given size, even if pools are disabled.
+     */
+    private BiFunction<TestType, RandomSource, Supplier<DataValue>> pooled(final String prefix, final BiFunction<TestType, RandomSource, Supplier<DataValue>> generator, final int size) {
+        var period = this.configuration.pool().refreshPeriod().toMillis();
+
+        if (period > 0 && this.poolExecutor == null) {
+            this.poolExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                var thread = new Thread(r, "test-value-pool");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        // nodes get created concurrently, and in any order, so pools don't use the random source of a node
+        return (t, random) -> this.pools.computeIfAbsent(prefix + "/" + t.getName(), key -> {
+            var pool = new ValuePool(generator.apply(t, this.random.derive(key.hashCode())), size, this.poolExecutor);
+            if (period > 0) {
+                this.poolExecutor.scheduleAtFixedRate(pool::refreshIfObserved, period, period, TimeUnit.MILLISECONDS);
+            }
+            return pool;
+        }).cursor(random);
+    }
+
+    @Override
+    public void read(final ReadContext context, final Double maxAge, final TimestampsToReturn timestamps, final List<ReadValueId> readValueIds) {
+        this.executor.execute(context, () -> IndexRangeReads.read(getNodeManager(), this.metrics, context, maxAge, timestamps, readValueIds, super::read));
+    }
+
+    @Override
+    public void write(final WriteContext context, final List<WriteValue> writeValues) {
+        this.executor.execute(context, () -> super.write(context, writeValues));
+    }
+
+    @Override
+    public void browse(final BrowseContext context, final ViewDescription view, final NodeId nodeId) {
+        this.executor.execute(context, () -> super.browse(context, view, nodeId));
     }
 
-    private void populateArray(final UaFolderNode base, TestType[] types, final int instances, final int arraySize) {
-        populateType(base, "Array", types, instances, arraySize, t -> () -> t.nextArray(arraySize));
+    @Override
+    public void getReferences(final BrowseContext context, final ViewDescription view, final NodeId nodeId) {
+        this.executor.execute(context, () -> super.getReferences(context, view, nodeId));
     }
 
     @Override
     public void onDataItemsCreated(final List<DataItem> dataItems) {
+        this.metrics.dataItemsCreated(dataItems);
+        this.monitoredNodes.onDataItemsCreated(dataItems);
         this.subscriptionModel.onDataItemsCreated(dataItems);
     }
 
@@ -252,11 +603,14 @@ public class TestNamespace extends ManagedNamespaceWithLifecycle {
 
     @Override
     public void onDataItemsDeleted(final List<DataItem> dataItems) {
+        this.metrics.dataItemsDeleted(dataItems);
+        this.monitoredNodes.onDataItemsDeleted(dataItems);
         this.subscriptionModel.onDataItemsDeleted(dataItems);
     }
 
     @Override
     public void onMonitoringModeChanged(final List<MonitoredItem> monitoredItems) {
+        this.monitoredNodes.onMonitoringModeChanged(monitoredItems);
         this.subscriptionModel.onMonitoringModeChanged(monitoredItems);
     }
 }
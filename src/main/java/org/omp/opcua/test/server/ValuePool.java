@@ -0,0 +1,119 @@
+package org.omp.opcua.test.server;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+
+/**
+ * A ring of pre-generated values.
+ * <p>
+ * Readers rotate through the ring using a {@link #cursor(RandomSource) cursor}, while the ring gets {@link #refresh() refreshed}
+ * in the background. Values keep the source timestamp of when they were generated.
+ * <p>
+ * While none of the nodes using the ring are {@link #setObserved(boolean) observed}, background refreshes get
+ * deferred until the next read. That read still returns a current value, and starts the refresh in the background.
+ */
+public class ValuePool {
+
+    private final Supplier<DataValue> generator;
+    private final AtomicReferenceArray<DataValue> values;
+    private final Executor executor;
+    private final AtomicInteger observers = new AtomicInteger();
+    private final AtomicBoolean stale = new AtomicBoolean();
+
+    /**
+     * @param generator The generator of the values.
+     * @param size The number of values in the ring.
+     * @param executor The executor of the refreshes deferred by {@link #refreshIfObserved()}.
+     */
+    public ValuePool(final Supplier<DataValue> generator, final int size, final Executor executor) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Pool size must be greater than zero");
+        }
+
+        this.generator = generator;
+        this.executor = executor;
+        this.values = new AtomicReferenceArray<>(size);
+
+        for (int i = 0; i < size; i++) {
+            this.values.set(i, generator.get());
+        }
+    }
+
+    public int size() {
+        return this.values.length();
+    }
+
+    /**
+     * Re-generate all values of the ring.
+     */
+    public void refresh() {
+        for (int i = 0; i < this.values.length(); i++) {
+            this.values.lazySet(i, this.generator.get());
+        }
+    }
+
+    private void refreshLater() {
+        try {
+            this.executor.execute(this::refresh);
+        } catch (RejectedExecutionException e) {
+            // shutting down
+        }
+    }
+
+    /**
+     * Refresh the ring if any node using it is observed, otherwise let the next read refresh it.
+     */
+    public void refreshIfObserved() {
+        if (this.observers.get() > 0) {
+            refresh();
+        } else {
+            this.stale.set(true);
+        }
+    }
+
+    /**
+     * Track whether a node using the ring became observed, or stopped being observed.
+     */
+    public void setObserved(final boolean observed) {
+        this.observers.addAndGet(observed ? 1 : -1);
+    }
+
+    /**
+     * Create a new cursor.
+     * <p>
+     * Each cursor has its own position, so that different nodes don't contend on a shared counter. Start positions
+     * get spread over the ring by the random source of the node, so they don't depend on the order nodes get created
+     * in.
+     *
+     * @param random The random source of the node.
+     * @return A new supplier, rotating through the ring.
+     */
+    public Supplier<DataValue> cursor(final RandomSource random) {
+        return new Cursor((int) Long.remainderUnsigned(random.nextLong(), size()));
+    }
+
+    private class Cursor implements Supplier<DataValue> {
+        // racy updates only skip or repeat a slot, which is fine
+        private int next;
+
+        Cursor(final int start) {
+            this.next = start;
+        }
+
+        @Override
+        public DataValue get() {
+            if (stale.get() && stale.compareAndSet(true, false)) {
+                refreshLater();
+            }
+            var current = this.next;
+            this.next = (current + 1) % values.length();
+            return values.get(current);
+        }
+    }
+}
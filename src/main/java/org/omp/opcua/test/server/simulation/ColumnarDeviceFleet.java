@@ -0,0 +1,361 @@
+package org.omp.opcua.test.server.simulation;
+
+import static org.omp.opcua.test.server.simulation.SimulatedDevice.Variable.ACTIVE;
+import static org.omp.opcua.test.server.simulation.SimulatedDevice.Variable.AMBIENT_TEMPERATURE;
+import static org.omp.opcua.test.server.simulation.SimulatedDevice.Variable.AMBIENT_TEMPERATURE_SETPOINT;
+import static org.omp.opcua.test.server.simulation.SimulatedDevice.Variable.POWER_CONSUMPTION;
+import static org.omp.opcua.test.server.simulation.SimulatedDevice.Variable.TEMPERATURE;
+
+import java.util.BitSet;
+import java.util.Map;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.omp.opcua.test.server.RandomSource;
+
+/**
+ * A fleet of {@link Device1} devices, stored as primitive columns indexed by device id.
+ * <p>
+ * This runs the same model as {@link Device1}, but a tick doesn't allocate anything. Values are only boxed
+ * when they get read.
+ * <p>
+ * Each device is guarded by a {@link SequenceLocks sequence lock}, so readers never lock.
+ */
+public class ColumnarDeviceFleet implements DeviceFleet {
+
+    private static final int JITTER_VALUES = 30;
+    private static final double JITTER_BANDWIDTH = 0.5;
+
+    private final int size;
+    private final SimulationClock clock;
+
+    private final double[] ambientTemperature;
+    private final double[] ambientTemperatureSetpoint;
+    private final double[] temperature;
+    private final double[] powerConsumption;
+    private final BitSet active;
+
+    /**
+     * The temperature of the model, the published one may lag behind, when it has a {@link Deadband}.
+     */
+    private final double[] temperatureState;
+
+    private final Deadband ambientTemperatureDeadband;
+    private final Deadband temperatureDeadband;
+    private final Deadband powerConsumptionDeadband;
+
+    private final SequenceLocks locks;
+
+    private final long[] ambientTemperatureTimestamp;
+    private final long[] ambientTemperatureSetpointTimestamp;
+    private final long[] temperatureTimestamp;
+    private final long[] powerConsumptionTimestamp;
+    private final long[] activeTimestamp;
+
+    /**
+     * Change listeners, indexed by variable ordinal and device. Allocated on first use.
+     */
+    private final Runnable[][] listeners = new Runnable[SimulatedDevice.Variable.values().length][];
+
+    /**
+     * Per device random seeds, see {@link RandomSource#nextGaussian(long[], int)}.
+     */
+    private final long[] seeds;
+
+    private final double[] jitterData;
+    private final double[] jitterSum;
+    private final int[] jitterIndex;
+
+    public ColumnarDeviceFleet(final int size, final RandomSource random) {
+        this(size, random, Map.of());
+    }
+
+    public ColumnarDeviceFleet(final int size, final RandomSource random, final Map<SimulatedDevice.Variable, Deadband> deadbands) {
+        this(size, 0, random, deadbands, SimulationClock.WALL);
+    }
+
+    /**
+     * Create a new fleet, which may be a shard of a larger fleet.
+     *
+     * @param size The number of devices.
+     * @param first The number of the first device, across all shards, so that each device gets the same random
+     *         values, no matter how the devices get sharded.
+     */
+    public ColumnarDeviceFleet(final int size, final int first, final RandomSource random, final Map<SimulatedDevice.Variable, Deadband> deadbands, final SimulationClock clock) {
+        this.size = size;
+        this.clock = clock;
+
+        this.ambientTemperatureDeadband = deadbands.getOrDefault(AMBIENT_TEMPERATURE, Deadband.NONE);
+        this.temperatureDeadband = deadbands.getOrDefault(TEMPERATURE, Deadband.NONE);
+        this.powerConsumptionDeadband = deadbands.getOrDefault(POWER_CONSUMPTION, Deadband.NONE);
+
+        this.ambientTemperature = new double[size];
+        this.ambientTemperatureSetpoint = new double[size];
+        this.temperature = new double[size];
+        this.powerConsumption = new double[size];
+        this.active = new BitSet(size);
+        this.temperatureState = new double[size];
+        this.locks = new SequenceLocks(size);
+
+        this.ambientTemperatureTimestamp = new long[size];
+        this.ambientTemperatureSetpointTimestamp = new long[size];
+        this.temperatureTimestamp = new long[size];
+        this.powerConsumptionTimestamp = new long[size];
+        this.activeTimestamp = new long[size];
+
+        this.seeds = new long[size];
+        this.jitterData = new double[size * JITTER_VALUES];
+        this.jitterSum = new double[size];
+        this.jitterIndex = new int[size];
+
+        var now = now();
+        for (int i = 0; i < size; i++) {
+            this.ambientTemperature[i] = 15.0;
+            this.ambientTemperatureSetpoint[i] = 15.0;
+            this.temperature[i] = 15.0;
+            this.temperatureState[i] = 15.0;
+
+            this.ambientTemperatureTimestamp[i] = now;
+            this.ambientTemperatureSetpointTimestamp[i] = now;
+            this.temperatureTimestamp[i] = now;
+            this.powerConsumptionTimestamp[i] = now;
+            this.activeTimestamp[i] = now;
+
+            this.seeds[i] = random.derive(first + i).nextLong();
+
+            var offset = i * JITTER_VALUES;
+            for (int j = 0; j < JITTER_VALUES; j++) {
+                this.jitterData[offset + j] = RandomSource.nextGaussian(this.seeds, i) * JITTER_BANDWIDTH;
+                this.jitterSum[i] += this.jitterData[offset + j];
+            }
+        }
+
+        tick();
+    }
+
+    private long now() {
+        return this.clock.now();
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public SimulatedDevice device(final int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return new Device(index);
+    }
+
+    @Override
+    public void tick(final int from, final int to) {
+        var now = now();
+        for (int i = from; i < to; i++) {
+            tick(i, now);
+        }
+    }
+
+    private void tick(final int i, final long now) {
+        int changed = 0;
+
+        this.locks.beginWrite(i);
+        try {
+            double ambient = this.ambientTemperatureSetpoint[i] + nextJitter(i);
+            changed |= set(this.ambientTemperature, this.ambientTemperatureTimestamp, this.ambientTemperatureDeadband, AMBIENT_TEMPERATURE, i, ambient, now);
+
+            double diff = this.temperatureState[i] - ambient;
+            diff = diff * 0.9;
+            if (this.active.get(i)) {
+                changed |= set(this.powerConsumption, this.powerConsumptionTimestamp, this.powerConsumptionDeadband, POWER_CONSUMPTION, i, 1000 + 100 * RandomSource.nextGaussian(this.seeds, i), now);
+                diff += 2;
+            } else {
+                changed |= set(this.powerConsumption, this.powerConsumptionTimestamp, this.powerConsumptionDeadband, POWER_CONSUMPTION, i, 0.0, now);
+            }
+
+            this.temperatureState[i] = ambient + diff;
+            changed |= set(this.temperature, this.temperatureTimestamp, this.temperatureDeadband, TEMPERATURE, i, this.temperatureState[i], now);
+        } finally {
+            this.locks.endWrite(i);
+        }
+
+        fireChanged(changed, i);
+    }
+
+    /**
+     * Same as {@link SmoothJitter#next()}, but operating on the jitter columns.
+     */
+    private double nextJitter(final int i) {
+        var idx = (this.jitterIndex[i] + 1) % JITTER_VALUES;
+        this.jitterIndex[i] = idx;
+
+        var pos = i * JITTER_VALUES + idx;
+        this.jitterSum[i] -= this.jitterData[pos];
+        this.jitterData[pos] = RandomSource.nextGaussian(this.seeds, i) * JITTER_BANDWIDTH;
+        this.jitterSum[i] += this.jitterData[pos];
+
+        return this.jitterSum[i] / JITTER_VALUES;
+    }
+
+    /**
+     * Set a value, and bump its timestamp, but only if it changed beyond its deadband. Same semantics as
+     * {@link Value#setValue(Object)}.
+     * <p>
+     * Must be called while holding the write stamp of the device.
+     *
+     * @return The change mask of the variable, or zero if the value didn't change.
+     */
+    private static int set(final double[] values, final long[] timestamps, final Deadband deadband, final SimulatedDevice.Variable variable, final int i, final double value, final long now) {
+        if (deadband.exceeds(values[i], value)) {
+            values[i] = value;
+            timestamps[i] = now;
+            return 1 << variable.ordinal();
+        }
+        return 0;
+    }
+
+    /**
+     * Notify listeners of changed variables. Must be called after the write stamp was released, as listeners read
+     * the new values.
+     */
+    private void fireChanged(final int changed, final int i) {
+        if (changed == 0) {
+            return;
+        }
+        for (int v = 0; v < this.listeners.length; v++) {
+            if ((changed & (1 << v)) == 0) {
+                continue;
+            }
+            var listeners = this.listeners[v];
+            if (listeners != null && listeners[i] != null) {
+                listeners[i].run();
+            }
+        }
+    }
+
+    private DataValue read(final double[] values, final long[] timestamps, final int i) {
+        double value;
+        long timestamp;
+        long stamp;
+        do {
+            stamp = this.locks.beginRead(i);
+            value = values[i];
+            timestamp = timestamps[i];
+        } while (!this.locks.validate(i, stamp));
+        return asDataValue(value, timestamp);
+    }
+
+    private DataValue readActive(final int i) {
+        boolean value;
+        long timestamp;
+        long stamp;
+        do {
+            stamp = this.locks.beginRead(i);
+            value = this.active.get(i);
+            timestamp = this.activeTimestamp[i];
+        } while (!this.locks.validate(i, stamp));
+        return asDataValue(value, timestamp);
+    }
+
+    private synchronized void setChangeListener(final SimulatedDevice.Variable variable, final int i, final Runnable listener) {
+        var listeners = this.listeners[variable.ordinal()];
+        if (listeners == null) {
+            listeners = new Runnable[this.size];
+            this.listeners[variable.ordinal()] = listeners;
+        }
+        listeners[i] = listener;
+    }
+
+    private static DataValue asDataValue(final Object value, final long timestamp) {
+        return new DataValue.Builder()
+                .setValue(new Variant(value))
+                .setSourceTime(new DateTime(timestamp))
+                .build();
+    }
+
+    private static Double toDouble(final DataValue dataValue) {
+        var value = dataValue.getValue().getValue();
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return null;
+    }
+
+    private class Device implements SimulatedDevice {
+        private final int index;
+
+        Device(final int index) {
+            this.index = index;
+        }
+
+        @Override
+        public DataValue getTemperature() {
+            return read(temperature, temperatureTimestamp, this.index);
+        }
+
+        @Override
+        public DataValue getAmbientTemperature() {
+            return read(ambientTemperature, ambientTemperatureTimestamp, this.index);
+        }
+
+        @Override
+        public DataValue getAmbientTemperatureSetpoint() {
+            return read(ambientTemperatureSetpoint, ambientTemperatureSetpointTimestamp, this.index);
+        }
+
+        @Override
+        public void setAmbientTemperatureSetpoint(final DataValue dataValue) {
+            var value = toDouble(dataValue);
+            if (value == null) {
+                return;
+            }
+
+            int changed;
+            locks.beginWrite(this.index);
+            try {
+                changed = set(ambientTemperatureSetpoint, ambientTemperatureSetpointTimestamp, Deadband.NONE, AMBIENT_TEMPERATURE_SETPOINT, this.index, value, now());
+            } finally {
+                locks.endWrite(this.index);
+            }
+            fireChanged(changed, this.index);
+        }
+
+        @Override
+        public DataValue getPowerConsumption() {
+            return read(powerConsumption, powerConsumptionTimestamp, this.index);
+        }
+
+        @Override
+        public DataValue isActive() {
+            return readActive(this.index);
+        }
+
+        @Override
+        public void setActive(final DataValue dataValue) {
+            var value = Boolean.TRUE.equals(dataValue.getValue().getValue());
+
+            locks.beginWrite(this.index);
+            try {
+                if (active.get(this.index) == value) {
+                    return;
+                }
+                // BitSet updates are read-modify-write on a word shared with other devices
+                synchronized (active) {
+                    active.set(this.index, value);
+                }
+                activeTimestamp[this.index] = now();
+            } finally {
+                locks.endWrite(this.index);
+            }
+            fireChanged(1 << ACTIVE.ordinal(), this.index);
+        }
+
+        @Override
+        public void setChangeListener(final Variable variable, final Runnable listener) {
+            ColumnarDeviceFleet.this.setChangeListener(variable, this.index, listener);
+        }
+    }
+}
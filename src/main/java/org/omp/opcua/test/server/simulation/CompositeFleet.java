@@ -0,0 +1,39 @@
+package org.omp.opcua.test.server.simulation;
+
+import java.util.List;
+
+/**
+ * Multiple fleets, ticked as one. Devices are numbered in the order of the fleets.
+ */
+public class CompositeFleet implements Fleet {
+
+    private final Fleet[] fleets;
+    /**
+     * The index of the first device of each fleet, plus the total size.
+     */
+    private final int[] offsets;
+
+    public CompositeFleet(final List<? extends Fleet> fleets) {
+        this.fleets = fleets.toArray(new Fleet[0]);
+        this.offsets = new int[this.fleets.length + 1];
+        for (int i = 0; i < this.fleets.length; i++) {
+            this.offsets[i + 1] = this.offsets[i] + this.fleets[i].size();
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.offsets[this.fleets.length];
+    }
+
+    @Override
+    public void tick(final int from, final int to) {
+        for (int i = 0; i < this.fleets.length; i++) {
+            var start = Math.max(from, this.offsets[i]);
+            var end = Math.min(to, this.offsets[i + 1]);
+            if (start < end) {
+                this.fleets[i].tick(start - this.offsets[i], end - this.offsets[i]);
+            }
+        }
+    }
+}
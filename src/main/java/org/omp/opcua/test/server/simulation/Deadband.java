@@ -0,0 +1,88 @@
+package org.omp.opcua.test.server.simulation;
+
+/**
+ * A deadband of a simulated value: a new value only counts as a change when it differs enough from the current one.
+ * <p>
+ * Values within the deadband neither update the value, nor its timestamp, so subscriptions don't get notified about
+ * them, no matter if they sample or get pushed.
+ */
+public final class Deadband {
+
+    /**
+     * Every different value is a change.
+     */
+    public static final Deadband NONE = new Deadband(Type.ABSOLUTE, 0);
+
+    public enum Type {
+        /**
+         * The absolute difference to the current value must exceed the deadband.
+         */
+        ABSOLUTE,
+        /**
+         * The difference must exceed the deadband, in percent of the current value.
+         */
+        PERCENT,
+    }
+
+    private final Type type;
+    private final double threshold;
+
+    private Deadband(final Type type, final double value) {
+        this.type = type;
+        this.threshold = type == Type.PERCENT ? value / 100.0 : value;
+    }
+
+    public static Deadband absolute(final double value) {
+        return new Deadband(Type.ABSOLUTE, value);
+    }
+
+    public static Deadband percent(final double value) {
+        return new Deadband(Type.PERCENT, value);
+    }
+
+    public static Deadband of(final SimulationConfiguration.DeadbandConfiguration configuration) {
+        return of(configuration.type(), configuration.value());
+    }
+
+    public static Deadband of(final Type type, final double value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Deadband must not be negative: " + value);
+        }
+        return new Deadband(type, value);
+    }
+
+    /**
+     * Check if a new value counts as a change.
+     *
+     * @param current The current value.
+     * @param value The new value.
+     * @return {@code true} if the new value is outside the deadband around the current one.
+     */
+    public boolean exceeds(final double current, final double value) {
+        if (Double.doubleToLongBits(current) == Double.doubleToLongBits(value)) {
+            return false;
+        }
+        if (this.threshold == 0) {
+            return true;
+        }
+
+        var delta = Math.abs(value - current);
+        if (Double.isNaN(delta)) {
+            // from or to NaN
+            return true;
+        }
+
+        switch (this.type) {
+            case PERCENT:
+                return delta > Math.abs(current) * this.threshold;
+            case ABSOLUTE:
+            default:
+                return delta > this.threshold;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.type == Type.PERCENT ? (this.threshold * 100.0) + "%" : Double.toString(this.threshold);
+    }
+}
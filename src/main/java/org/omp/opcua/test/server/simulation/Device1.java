@@ -1,13 +1,26 @@
 package org.omp.opcua.test.server.simulation;
 
-import java.util.Random;
+import static org.omp.opcua.test.server.simulation.SimulatedDevice.Variable.AMBIENT_TEMPERATURE;
+import static org.omp.opcua.test.server.simulation.SimulatedDevice.Variable.POWER_CONSUMPTION;
+import static org.omp.opcua.test.server.simulation.SimulatedDevice.Variable.TEMPERATURE;
 
-import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
-
-public class Device1 {
-
-    private static final Random R = new Random();
+import java.util.Map;
 
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.omp.opcua.test.server.RandomSource;
+
+/**
+ * A simulated device, keeping its state in {@link Value}s.
+ * <p>
+ * Only the tick thread writes the physical properties, clients may concurrently write the control values. As
+ * values are published atomically, no additional locking is required. The random source is only used while
+ * ticking.
+ * <p>
+ * The model keeps its own temperature, as the published one may lag behind, when it has a {@link Deadband}.
+ */
+public class Device1 implements SimulatedDevice {
+
+    private final RandomSource random;
     private final SmoothJitter jitter;
 
     private final Value<Double> ambientTemperature;
@@ -16,14 +29,25 @@ public class Device1 {
     private final Value<Boolean> active;
     private final Value<Double> powerConsumption;
 
+    private double temperatureState;
 
-    public Device1() {
-        this.jitter = new SmoothJitter(R, 30, 0.5);
-        this.ambientTemperature = new Value<>(15.0);
-        this.ambientTemperatureSetpoint = new Value<>(15.0);
-        this.temperature = new Value<>(15.0);
-        this.powerConsumption = new Value<>(0.0);
-        this.active = new Value<>(false);
+    public Device1(RandomSource random) {
+        this(random, Map.of());
+    }
+
+    public Device1(RandomSource random, Map<Variable, Deadband> deadbands) {
+        this(random, deadbands, SimulationClock.WALL);
+    }
+
+    public Device1(RandomSource random, Map<Variable, Deadband> deadbands, SimulationClock clock) {
+        this.random = random;
+        this.jitter = new SmoothJitter(random, 30, 0.5);
+        this.ambientTemperature = new Value<>(15.0, deadbands.getOrDefault(AMBIENT_TEMPERATURE, Deadband.NONE)::exceeds, clock);
+        this.ambientTemperatureSetpoint = new Value<>(15.0, clock);
+        this.temperature = new Value<>(15.0, deadbands.getOrDefault(TEMPERATURE, Deadband.NONE)::exceeds, clock);
+        this.powerConsumption = new Value<>(0.0, deadbands.getOrDefault(POWER_CONSUMPTION, Deadband.NONE)::exceeds, clock);
+        this.active = new Value<>(false, clock);
+        this.temperatureState = 15.0;
 
         tick();
     }
@@ -32,16 +56,17 @@ public class Device1 {
         double ambient = this.ambientTemperatureSetpoint.getValue() + this.jitter.next();
         this.ambientTemperature.setValue(ambient);
 
-        double diff = this.temperature.getValue() - ambient;
+        double diff = this.temperatureState - ambient;
         diff = diff * 0.9;
         if (this.active.getValue()) {
-            this.powerConsumption.setValue(1000 + 100 * R.nextGaussian());
+            this.powerConsumption.setValue(1000 + 100 * this.random.nextGaussian());
             diff += 2;
         } else {
             this.powerConsumption.setValue(0.0);
         }
 
-        this.temperature.setValue(ambient + diff);
+        this.temperatureState = ambient + diff;
+        this.temperature.setValue(this.temperatureState);
     }
 
     public DataValue getTemperature() {
@@ -75,4 +100,24 @@ public class Device1 {
         var value = dataValue.getValue().getValue();
         this.active.setValue(Boolean.TRUE.equals(value));
     }
+
+    public void setChangeListener(Variable variable, Runnable listener) {
+        switch (variable) {
+            case TEMPERATURE:
+                this.temperature.setListener(listener);
+                break;
+            case AMBIENT_TEMPERATURE:
+                this.ambientTemperature.setListener(listener);
+                break;
+            case AMBIENT_TEMPERATURE_SETPOINT:
+                this.ambientTemperatureSetpoint.setListener(listener);
+                break;
+            case POWER_CONSUMPTION:
+                this.powerConsumption.setListener(listener);
+                break;
+            case ACTIVE:
+                this.active.setListener(listener);
+                break;
+        }
+    }
 }
@@ -0,0 +1,9 @@
+package org.omp.opcua.test.server.simulation;
+
+/**
+ * A fleet of {@link Device1} devices.
+ */
+public interface DeviceFleet extends Fleet {
+
+    SimulatedDevice device(int index);
+}
@@ -0,0 +1,301 @@
+package org.omp.opcua.test.server.simulation;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+
+/**
+ * A device model, declared in the configuration, and compiled once.
+ * <p>
+ * A model is a list of variables, each one with an optional update expression, see {@link ExpressionCompiler}. Each
+ * tick evaluates the update expressions in the order of the variables. A variable sees the values of this tick for
+ * the variables before it, and the values of the last tick for itself and the variables after it.
+ * <p>
+ * For example, a model close to {@link Device1}, apart from the smoothing of the ambient temperature jitter:
+ * <pre>
+ * variables:
+ *   - name: ambientTemperatureSetpoint
+ *     access: read-write
+ *     initial: 15
+ *   - name: active
+ *     type: boolean
+ *     access: read-write
+ *   - name: ambientTemperature
+ *     initial: 15
+ *     update: ambientTemperatureSetpoint + gaussian(0, 0.1)
+ *   - name: powerConsumption
+ *     update: "active ? gaussian(1000, 100) : 0"
+ *   - name: temperature
+ *     initial: 15
+ *     update: "ambientTemperature + (temperature - ambientTemperature) * 0.9 + (active ? 2 : 0)"
+ * </pre>
+ */
+public final class DeviceModel {
+
+    /**
+     * The maximum number of variables of a model, each one gets a bit in a change mask.
+     */
+    static final int MAX_VARIABLES = Long.SIZE;
+
+    public enum Type {
+        DOUBLE(Identifiers.Double),
+        INT64(Identifiers.Int64),
+        BOOLEAN(Identifiers.Boolean),
+        ;
+
+        private final NodeId dataType;
+
+        Type(final NodeId dataType) {
+            this.dataType = dataType;
+        }
+
+        public NodeId getDataType() {
+            return this.dataType;
+        }
+
+        /**
+         * Convert a value, as stored in a {@code double}, to the value of a variable of this type.
+         */
+        Object box(final double value) {
+            switch (this) {
+                case INT64:
+                    return (long) value;
+                case BOOLEAN:
+                    return value != 0;
+                case DOUBLE:
+                default:
+                    return value;
+            }
+        }
+
+        /**
+         * Convert a value of a variable of this type, e.g. a written value, to a {@code double}.
+         *
+         * @return The value, or {@code null} if it can't be converted.
+         */
+        Double unbox(final Object value) {
+            if (this == BOOLEAN) {
+                return value instanceof Boolean ? ((Boolean) value ? 1.0 : 0.0) : null;
+            }
+            if (!(value instanceof Number)) {
+                return null;
+            }
+            var result = ((Number) value).doubleValue();
+            return this == INT64 ? Math.rint(result) : result;
+        }
+    }
+
+    public enum Access {
+        READ,
+        READ_WRITE,
+    }
+
+    public static final class Variable {
+        private final int index;
+        private final String name;
+        private final String label;
+        private final Optional<String> folder;
+        private final Type type;
+        private final Access access;
+        private final Deadband deadband;
+        private final boolean updated;
+
+        private Variable(final int index, final SimulationConfiguration.ModelVariable configuration) {
+            this.index = index;
+            this.name = configuration.name();
+            this.label = configuration.label().orElse(this.name);
+            this.folder = configuration.folder();
+            this.type = configuration.type();
+            this.access = configuration.access();
+            this.deadband = configuration.deadband().isPresent()
+                    ? Deadband.of(configuration.deadbandType(), configuration.deadband().getAsDouble())
+                    : Deadband.NONE;
+            this.updated = configuration.update().isPresent();
+        }
+
+        /**
+         * The index of the variable in the model.
+         */
+        public int getIndex() {
+            return this.index;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public String getLabel() {
+            return this.label;
+        }
+
+        public Optional<String> getFolder() {
+            return this.folder;
+        }
+
+        public Type getType() {
+            return this.type;
+        }
+
+        public Access getAccess() {
+            return this.access;
+        }
+
+        public Deadband getDeadband() {
+            return this.deadband;
+        }
+
+        /**
+         * Check if the value is updated by the simulation, and not only written by clients.
+         */
+        public boolean isUpdated() {
+            return this.updated;
+        }
+    }
+
+    private final String name;
+    private final List<Variable> variables;
+    private final Set<String> folders;
+    private final Expression[] initials;
+    private final int[] updated;
+    private final Expression[] updates;
+
+    private DeviceModel(final String name, final List<Variable> variables, final Expression[] initials, final int[] updated, final Expression[] updates) {
+        this.name = name;
+        this.variables = Collections.unmodifiableList(variables);
+        this.initials = initials;
+        this.updated = updated;
+        this.updates = updates;
+
+        var folders = new LinkedHashSet<String>();
+        for (var variable : variables) {
+            variable.getFolder().ifPresent(folders::add);
+        }
+        this.folders = Collections.unmodifiableSet(folders);
+    }
+
+    /**
+     * Compile a model.
+     *
+     * @param name The name of the model.
+     * @param configuration The model.
+     * @param tickPeriod The tick period, {@code dt} in expressions.
+     * @return The compiled model.
+     * @throws IllegalArgumentException If the model is invalid.
+     */
+    public static DeviceModel compile(final String name, final SimulationConfiguration.Model configuration, final Duration tickPeriod) {
+        var definitions = configuration.variables();
+        if (definitions.size() > MAX_VARIABLES) {
+            throw new IllegalArgumentException(String.format("Model '%s' has more than %s variables", name, MAX_VARIABLES));
+        }
+
+        var variables = new ArrayList<Variable>(definitions.size());
+        var indexes = new HashMap<String, Integer>();
+        for (var definition : definitions) {
+            var variable = new Variable(variables.size(), definition);
+            if (!isIdentifier(variable.getName())) {
+                throw new IllegalArgumentException(String.format("Invalid variable name in model '%s': '%s'", name, variable.getName()));
+            }
+            if (indexes.put(variable.getName(), variable.getIndex()) != null) {
+                throw new IllegalArgumentException(String.format("Duplicate variable in model '%s': '%s'", name, variable.getName()));
+            }
+            variables.add(variable);
+        }
+
+        var dt = tickPeriod.toNanos() / 1e9;
+        var initials = new Expression[variables.size()];
+        var updated = new ArrayList<Integer>();
+        var updates = new ArrayList<Expression>();
+
+        for (var variable : variables) {
+            var definition = definitions.get(variable.getIndex());
+            var compiler = new ExpressionCompiler(indexes, variable.getIndex(), dt);
+            try {
+                initials[variable.getIndex()] = coerce(variable.getType(), compiler.compile(definition.initial()));
+                if (definition.update().isPresent()) {
+                    updated.add(variable.getIndex());
+                    updates.add(coerce(variable.getType(), compiler.compile(definition.update().get())));
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("Failed to compile '%s' of model '%s': %s", variable.getName(), name, e.getMessage()), e);
+            }
+        }
+
+        return new DeviceModel(
+                name,
+                variables,
+                initials,
+                updated.stream().mapToInt(Integer::intValue).toArray(),
+                updates.toArray(new Expression[0]));
+    }
+
+    /**
+     * Convert the result of an expression to the type of its variable.
+     */
+    private static Expression coerce(final Type type, final Expression expression) {
+        switch (type) {
+            case INT64:
+                return (s, o, r, d) -> Math.rint(expression.evaluate(s, o, r, d));
+            case BOOLEAN:
+                return (s, o, r, d) -> expression.evaluate(s, o, r, d) != 0 ? 1 : 0;
+            case DOUBLE:
+            default:
+                return expression;
+        }
+    }
+
+    private static boolean isIdentifier(final String name) {
+        if (name.isEmpty() || !Character.isJavaIdentifierStart(name.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            if (!Character.isJavaIdentifierPart(name.charAt(i))) {
+                return false;
+            }
+        }
+        return !name.equals("dt") && !name.equals("true") && !name.equals("false");
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public List<Variable> getVariables() {
+        return this.variables;
+    }
+
+    /**
+     * The folders of a device, in the order they are first used by a variable.
+     */
+    public Set<String> getFolders() {
+        return this.folders;
+    }
+
+    /**
+     * The initial value expressions, by variable index.
+     */
+    Expression[] getInitials() {
+        return this.initials;
+    }
+
+    /**
+     * The variables with an update expression, in the order of evaluation.
+     */
+    int[] getUpdated() {
+        return this.updated;
+    }
+
+    /**
+     * The update expressions, matching {@link #getUpdated()}.
+     */
+    Expression[] getUpdates() {
+        return this.updates;
+    }
+}
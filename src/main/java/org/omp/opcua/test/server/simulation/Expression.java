@@ -0,0 +1,21 @@
+package org.omp.opcua.test.server.simulation;
+
+/**
+ * A compiled expression of a {@link DeviceModel}, evaluated against the primitive state of a single device.
+ * <p>
+ * Booleans are {@code 1.0} and {@code 0.0}, any value other than zero counts as {@code true}.
+ */
+@FunctionalInterface
+interface Expression {
+
+    /**
+     * Evaluate the expression.
+     *
+     * @param state The values of the variables of all devices.
+     * @param offset The index of the first variable of the device in the state.
+     * @param seeds The random seeds, see {@link org.omp.opcua.test.server.RandomSource#nextGaussian(long[], int)}.
+     * @param device The index of the device, in the seeds.
+     * @return The value.
+     */
+    double evaluate(double[] state, int offset, long[] seeds, int device);
+}
@@ -0,0 +1,540 @@
+package org.omp.opcua.test.server.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.omp.opcua.test.server.RandomSource;
+
+/**
+ * Compiles the expressions of a {@link DeviceModel} into a tree of {@link Expression} lambdas.
+ * <p>
+ * Expressions get parsed once, constant sub-expressions get folded, so a tick only runs the lambdas, without looking
+ * at the source again. The syntax is the one of Java expressions, on numbers:
+ * <ul>
+ *     <li>Literals: numbers, {@code true}, {@code false}</li>
+ *     <li>Variables of the device, by name, and {@code dt}, the tick period in seconds</li>
+ *     <li>Operators: {@code + - * / %}, {@code < <= > >= == !=}, {@code && || !} and {@code ? :}</li>
+ *     <li>Functions: {@code abs}, {@code sqrt}, {@code exp}, {@code log}, {@code sin}, {@code cos}, {@code round},
+ *     {@code min}, {@code max}, {@code pow}, {@code clamp(value, min, max)}</li>
+ *     <li>{@code gaussian(mean, stddev)} and {@code uniform(min, max)}: random values</li>
+ *     <li>{@code lag(target, tau)}: the variable itself, following the target with a first-order lag, with a time
+ *     constant of {@code tau} seconds</li>
+ * </ul>
+ */
+final class ExpressionCompiler {
+
+    /**
+     * A compiled (sub-)expression, which knows if it is constant.
+     */
+    private static final class Node {
+        final Expression expression;
+        final boolean constant;
+        final double value;
+
+        private Node(final Expression expression, final boolean constant, final double value) {
+            this.expression = expression;
+            this.constant = constant;
+            this.value = value;
+        }
+
+        static Node of(final Expression expression) {
+            return new Node(expression, false, 0);
+        }
+
+        static Node constant(final double value) {
+            return new Node((state, offset, seeds, device) -> value, true, value);
+        }
+    }
+
+    private final Map<String, Integer> variables;
+    private final int self;
+    private final double dt;
+
+    private String source;
+    private int pos;
+
+    /**
+     * Create a new compiler.
+     *
+     * @param variables The index of each variable in the state of a device, by name.
+     * @param self The index of the variable the expressions are for, for {@code lag}.
+     * @param dt The tick period, in seconds.
+     */
+    ExpressionCompiler(final Map<String, Integer> variables, final int self, final double dt) {
+        this.variables = variables;
+        this.self = self;
+        this.dt = dt;
+    }
+
+    Expression compile(final String source) {
+        this.source = source;
+        this.pos = 0;
+
+        var result = parseExpression();
+        skipWhitespace();
+        if (this.pos < source.length()) {
+            throw error("Unexpected '" + source.charAt(this.pos) + "'");
+        }
+        return result.expression;
+    }
+
+    private Node parseExpression() {
+        var condition = parseOr();
+        if (!accept("?")) {
+            return condition;
+        }
+
+        var a = parseExpression();
+        expect(":");
+        var b = parseExpression();
+
+        if (condition.constant) {
+            return condition.value != 0 ? a : b;
+        }
+        var c = condition.expression;
+        var ea = a.expression;
+        var eb = b.expression;
+        return Node.of((s, o, r, d) -> c.evaluate(s, o, r, d) != 0 ? ea.evaluate(s, o, r, d) : eb.evaluate(s, o, r, d));
+    }
+
+    private Node parseOr() {
+        var result = parseAnd();
+        while (accept("||")) {
+            result = logical(result, parseAnd(), true);
+        }
+        return result;
+    }
+
+    private Node parseAnd() {
+        var result = parseComparison();
+        while (accept("&&")) {
+            result = logical(result, parseComparison(), false);
+        }
+        return result;
+    }
+
+    private Node parseComparison() {
+        var result = parseSum();
+        for (var op : new String[]{"<=", ">=", "==", "!=", "<", ">"}) {
+            if (accept(op)) {
+                return comparison(op, result, parseSum());
+            }
+        }
+        return result;
+    }
+
+    private Node parseSum() {
+        var result = parseProduct();
+        while (true) {
+            if (accept("+")) {
+                result = arithmetic('+', result, parseProduct());
+            } else if (accept("-")) {
+                result = arithmetic('-', result, parseProduct());
+            } else {
+                return result;
+            }
+        }
+    }
+
+    private Node parseProduct() {
+        var result = parseUnary();
+        while (true) {
+            if (accept("*")) {
+                result = arithmetic('*', result, parseUnary());
+            } else if (accept("/")) {
+                result = arithmetic('/', result, parseUnary());
+            } else if (accept("%")) {
+                result = arithmetic('%', result, parseUnary());
+            } else {
+                return result;
+            }
+        }
+    }
+
+    private Node parseUnary() {
+        if (accept("-")) {
+            var a = parseUnary();
+            if (a.constant) {
+                return Node.constant(-a.value);
+            }
+            var ea = a.expression;
+            return Node.of((s, o, r, d) -> -ea.evaluate(s, o, r, d));
+        }
+        if (accept("!")) {
+            var a = parseUnary();
+            if (a.constant) {
+                return Node.constant(a.value != 0 ? 0 : 1);
+            }
+            var ea = a.expression;
+            return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) != 0 ? 0 : 1);
+        }
+        return parsePrimary();
+    }
+
+    private Node parsePrimary() {
+        skipWhitespace();
+        if (this.pos >= this.source.length()) {
+            throw error("Unexpected end of expression");
+        }
+
+        var c = this.source.charAt(this.pos);
+        if (accept("(")) {
+            var result = parseExpression();
+            expect(")");
+            return result;
+        }
+        if (Character.isDigit(c) || c == '.') {
+            return Node.constant(parseNumber());
+        }
+        if (Character.isJavaIdentifierStart(c)) {
+            var name = parseIdentifier();
+            if (accept("(")) {
+                return function(name, parseArguments());
+            }
+            return identifier(name);
+        }
+
+        throw error("Unexpected '" + c + "'");
+    }
+
+    private List<Node> parseArguments() {
+        var result = new ArrayList<Node>();
+        if (accept(")")) {
+            return result;
+        }
+        do {
+            result.add(parseExpression());
+        } while (accept(","));
+        expect(")");
+        return result;
+    }
+
+    private double parseNumber() {
+        var start = this.pos;
+        while (this.pos < this.source.length()) {
+            var c = this.source.charAt(this.pos);
+            if (Character.isDigit(c) || c == '.') {
+                this.pos++;
+            } else if ((c == 'e' || c == 'E') && this.pos + 1 < this.source.length()) {
+                this.pos++;
+                var sign = this.source.charAt(this.pos);
+                if (sign == '+' || sign == '-') {
+                    this.pos++;
+                }
+            } else {
+                break;
+            }
+        }
+        try {
+            return Double.parseDouble(this.source.substring(start, this.pos));
+        } catch (NumberFormatException e) {
+            this.pos = start;
+            throw error("Invalid number");
+        }
+    }
+
+    private String parseIdentifier() {
+        var start = this.pos;
+        while (this.pos < this.source.length() && Character.isJavaIdentifierPart(this.source.charAt(this.pos))) {
+            this.pos++;
+        }
+        return this.source.substring(start, this.pos);
+    }
+
+    private Node identifier(final String name) {
+        switch (name) {
+            case "true":
+                return Node.constant(1);
+            case "false":
+                return Node.constant(0);
+            case "dt":
+                return Node.constant(this.dt);
+        }
+
+        var index = this.variables.get(name);
+        if (index == null) {
+            throw error("Unknown variable '" + name + "'");
+        }
+        int i = index;
+        return Node.of((s, o, r, d) -> s[o + i]);
+    }
+
+    private Node function(final String name, final List<Node> args) {
+        switch (name) {
+            case "abs":
+                return unary(name, args, Math::abs, e -> (s, o, r, d) -> Math.abs(e.evaluate(s, o, r, d)));
+            case "sqrt":
+                return unary(name, args, Math::sqrt, e -> (s, o, r, d) -> Math.sqrt(e.evaluate(s, o, r, d)));
+            case "exp":
+                return unary(name, args, Math::exp, e -> (s, o, r, d) -> Math.exp(e.evaluate(s, o, r, d)));
+            case "log":
+                return unary(name, args, Math::log, e -> (s, o, r, d) -> Math.log(e.evaluate(s, o, r, d)));
+            case "sin":
+                return unary(name, args, Math::sin, e -> (s, o, r, d) -> Math.sin(e.evaluate(s, o, r, d)));
+            case "cos":
+                return unary(name, args, Math::cos, e -> (s, o, r, d) -> Math.cos(e.evaluate(s, o, r, d)));
+            case "round":
+                return unary(name, args, Math::rint, e -> (s, o, r, d) -> Math.rint(e.evaluate(s, o, r, d)));
+            case "min": {
+                checkArguments(name, args, 2);
+                var a = args.get(0);
+                var b = args.get(1);
+                if (a.constant && b.constant) {
+                    return Node.constant(Math.min(a.value, b.value));
+                }
+                var ea = a.expression;
+                var eb = b.expression;
+                return Node.of((s, o, r, d) -> Math.min(ea.evaluate(s, o, r, d), eb.evaluate(s, o, r, d)));
+            }
+            case "max": {
+                checkArguments(name, args, 2);
+                var a = args.get(0);
+                var b = args.get(1);
+                if (a.constant && b.constant) {
+                    return Node.constant(Math.max(a.value, b.value));
+                }
+                var ea = a.expression;
+                var eb = b.expression;
+                return Node.of((s, o, r, d) -> Math.max(ea.evaluate(s, o, r, d), eb.evaluate(s, o, r, d)));
+            }
+            case "pow": {
+                checkArguments(name, args, 2);
+                var a = args.get(0);
+                var b = args.get(1);
+                if (a.constant && b.constant) {
+                    return Node.constant(Math.pow(a.value, b.value));
+                }
+                var ea = a.expression;
+                var eb = b.expression;
+                return Node.of((s, o, r, d) -> Math.pow(ea.evaluate(s, o, r, d), eb.evaluate(s, o, r, d)));
+            }
+            case "clamp": {
+                checkArguments(name, args, 3);
+                var ev = args.get(0).expression;
+                var emin = args.get(1).expression;
+                var emax = args.get(2).expression;
+                if (args.get(0).constant && args.get(1).constant && args.get(2).constant) {
+                    return Node.constant(Math.max(args.get(1).value, Math.min(args.get(2).value, args.get(0).value)));
+                }
+                return Node.of((s, o, r, d) -> Math.max(emin.evaluate(s, o, r, d), Math.min(emax.evaluate(s, o, r, d), ev.evaluate(s, o, r, d))));
+            }
+            case "gaussian": {
+                checkArguments(name, args, 2);
+                var mean = args.get(0);
+                var stddev = args.get(1);
+                if (mean.constant && stddev.constant) {
+                    var m = mean.value;
+                    var sd = stddev.value;
+                    return Node.of((s, o, r, d) -> m + sd * RandomSource.nextGaussian(r, d));
+                }
+                var em = mean.expression;
+                var esd = stddev.expression;
+                return Node.of((s, o, r, d) -> em.evaluate(s, o, r, d) + esd.evaluate(s, o, r, d) * RandomSource.nextGaussian(r, d));
+            }
+            case "uniform": {
+                checkArguments(name, args, 2);
+                var emin = args.get(0).expression;
+                var emax = args.get(1).expression;
+                return Node.of((s, o, r, d) -> {
+                    var min = emin.evaluate(s, o, r, d);
+                    return min + (emax.evaluate(s, o, r, d) - min) * RandomSource.nextDouble(r, d);
+                });
+            }
+            case "lag": {
+                checkArguments(name, args, 2);
+                var et = args.get(0).expression;
+                var tau = args.get(1);
+                int i = this.self;
+                if (tau.constant) {
+                    // the smoothing factor only depends on the tick period and the time constant
+                    var alpha = lagFactor(this.dt, tau.value);
+                    return Node.of((s, o, r, d) -> {
+                        var current = s[o + i];
+                        return current + (et.evaluate(s, o, r, d) - current) * alpha;
+                    });
+                }
+                var dt = this.dt;
+                var etau = tau.expression;
+                return Node.of((s, o, r, d) -> {
+                    var current = s[o + i];
+                    return current + (et.evaluate(s, o, r, d) - current) * lagFactor(dt, etau.evaluate(s, o, r, d));
+                });
+            }
+            default:
+                throw error("Unknown function '" + name + "'");
+        }
+    }
+
+    private static double lagFactor(final double dt, final double tau) {
+        return tau <= 0 ? 1.0 : 1.0 - Math.exp(-dt / tau);
+    }
+
+    private interface Unary {
+        double apply(double value);
+    }
+
+    private interface UnaryCompiler {
+        Expression compile(Expression argument);
+    }
+
+    private Node unary(final String name, final List<Node> args, final Unary fold, final UnaryCompiler compiler) {
+        checkArguments(name, args, 1);
+        var a = args.get(0);
+        if (a.constant) {
+            return Node.constant(fold.apply(a.value));
+        }
+        return Node.of(compiler.compile(a.expression));
+    }
+
+    private void checkArguments(final String name, final List<Node> args, final int expected) {
+        if (args.size() != expected) {
+            throw error("'" + name + "' expects " + expected + " argument(s), got " + args.size());
+        }
+    }
+
+    private static Node arithmetic(final char op, final Node a, final Node b) {
+        if (a.constant && b.constant) {
+            return Node.constant(apply(op, a.value, b.value));
+        }
+
+        var ea = a.expression;
+        if (b.constant) {
+            // the most common case, e.g. scaling a variable
+            var vb = b.value;
+            switch (op) {
+                case '+':
+                    return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) + vb);
+                case '-':
+                    return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) - vb);
+                case '*':
+                    return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) * vb);
+                case '/':
+                    return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) / vb);
+                default:
+                    return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) % vb);
+            }
+        }
+
+        var eb = b.expression;
+        switch (op) {
+            case '+':
+                return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) + eb.evaluate(s, o, r, d));
+            case '-':
+                return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) - eb.evaluate(s, o, r, d));
+            case '*':
+                return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) * eb.evaluate(s, o, r, d));
+            case '/':
+                return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) / eb.evaluate(s, o, r, d));
+            default:
+                return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) % eb.evaluate(s, o, r, d));
+        }
+    }
+
+    private static double apply(final char op, final double a, final double b) {
+        switch (op) {
+            case '+':
+                return a + b;
+            case '-':
+                return a - b;
+            case '*':
+                return a * b;
+            case '/':
+                return a / b;
+            default:
+                return a % b;
+        }
+    }
+
+    private static Node comparison(final String op, final Node a, final Node b) {
+        if (a.constant && b.constant) {
+            return Node.constant(compare(op, a.value, b.value) ? 1 : 0);
+        }
+
+        var ea = a.expression;
+        var eb = b.expression;
+        switch (op) {
+            case "<":
+                return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) < eb.evaluate(s, o, r, d) ? 1 : 0);
+            case "<=":
+                return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) <= eb.evaluate(s, o, r, d) ? 1 : 0);
+            case ">":
+                return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) > eb.evaluate(s, o, r, d) ? 1 : 0);
+            case ">=":
+                return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) >= eb.evaluate(s, o, r, d) ? 1 : 0);
+            case "==":
+                return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) == eb.evaluate(s, o, r, d) ? 1 : 0);
+            default:
+                return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) != eb.evaluate(s, o, r, d) ? 1 : 0);
+        }
+    }
+
+    private static boolean compare(final String op, final double a, final double b) {
+        switch (op) {
+            case "<":
+                return a < b;
+            case "<=":
+                return a <= b;
+            case ">":
+                return a > b;
+            case ">=":
+                return a >= b;
+            case "==":
+                return a == b;
+            default:
+                return a != b;
+        }
+    }
+
+    private static Node logical(final Node a, final Node b, final boolean or) {
+        if (a.constant) {
+            if ((a.value != 0) == or) {
+                // short-circuit
+                return Node.constant(or ? 1 : 0);
+            }
+            return b.constant ? Node.constant(b.value != 0 ? 1 : 0) : toBoolean(b);
+        }
+
+        var ea = a.expression;
+        var eb = b.expression;
+        if (or) {
+            return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) != 0 || eb.evaluate(s, o, r, d) != 0 ? 1 : 0);
+        }
+        return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) != 0 && eb.evaluate(s, o, r, d) != 0 ? 1 : 0);
+    }
+
+    private static Node toBoolean(final Node a) {
+        var ea = a.expression;
+        return Node.of((s, o, r, d) -> ea.evaluate(s, o, r, d) != 0 ? 1 : 0);
+    }
+
+    private void skipWhitespace() {
+        while (this.pos < this.source.length() && Character.isWhitespace(this.source.charAt(this.pos))) {
+            this.pos++;
+        }
+    }
+
+    private boolean accept(final String token) {
+        skipWhitespace();
+        if (!this.source.startsWith(token, this.pos)) {
+            return false;
+        }
+        // don't mistake "<=" for "<", or "||" for "|"
+        var end = this.pos + token.length();
+        if (token.length() == 1 && end < this.source.length() && "<>=!&|".indexOf(token.charAt(0)) >= 0 && this.source.charAt(end) == '=') {
+            return false;
+        }
+        this.pos = end;
+        return true;
+    }
+
+    private void expect(final String token) {
+        if (!accept(token)) {
+            throw error("Expected '" + token + "'");
+        }
+    }
+
+    private IllegalArgumentException error(final String message) {
+        return new IllegalArgumentException(message + " at position " + this.pos + " of: " + this.source);
+    }
+}
@@ -0,0 +1,23 @@
+package org.omp.opcua.test.server.simulation;
+
+/**
+ * A set of simulated devices, which get ticked together.
+ */
+public interface Fleet {
+
+    int size();
+
+    /**
+     * Tick a contiguous range of devices.
+     * <p>
+     * Ranges which don't overlap may be ticked concurrently.
+     *
+     * @param from The first device, inclusive.
+     * @param to The last device, exclusive.
+     */
+    void tick(int from, int to);
+
+    default void tick() {
+        tick(0, size());
+    }
+}
@@ -0,0 +1,191 @@
+package org.omp.opcua.test.server.simulation;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+
+/**
+ * The history of a single variable: a ring buffer of samples, each one a packed pair of a timestamp, in
+ * {@link DateTime#getUtcTime() OPC UA time}, and a value, stored as a {@code double}.
+ * <p>
+ * Timestamps are strictly increasing, so reads can use binary searches, and resume right after the last timestamp
+ * they returned. Once the buffer is full, new samples overwrite the oldest ones.
+ */
+abstract class HistoryBuffer {
+
+    @FunctionalInterface
+    interface Visitor {
+        void accept(long time, double value);
+    }
+
+    private final DeviceModel.Type type;
+    private final int capacity;
+
+    /**
+     * The number of samples ever recorded, the index of the next sample.
+     */
+    private long count;
+    private long lastTime = Long.MIN_VALUE;
+
+    HistoryBuffer(final DeviceModel.Type type, final int capacity) {
+        this.type = type;
+        this.capacity = capacity;
+    }
+
+    DeviceModel.Type getType() {
+        return this.type;
+    }
+
+    /**
+     * The maximum number of samples.
+     */
+    int getCapacity() {
+        return this.capacity;
+    }
+
+    protected abstract long time(int slot);
+
+    protected abstract double value(int slot);
+
+    protected abstract void set(int slot, long time, double value);
+
+    /**
+     * Record the current value of the variable.
+     *
+     * @param dataValue The value, ignored if it can't be converted to the type of the variable.
+     * @return {@code true} if the value got recorded.
+     */
+    boolean record(final DataValue dataValue) {
+        var value = this.type.unbox(dataValue.getValue().getValue());
+        if (value == null) {
+            return false;
+        }
+        var time = dataValue.getSourceTime() != null ? dataValue.getSourceTime().getUtcTime() : DateTime.now().getUtcTime();
+        record(time, value);
+        return true;
+    }
+
+    synchronized void record(final long time, final double value) {
+        var next = Math.max(time, this.lastTime + 1);
+        set((int) (this.count % this.capacity), next, value);
+        this.count++;
+        this.lastTime = next;
+    }
+
+    /**
+     * Visit the samples of a time range.
+     *
+     * @param from The first timestamp, inclusive.
+     * @param to The last timestamp, inclusive.
+     * @param forward {@code true} to visit the samples oldest first, {@code false} to visit them newest first.
+     * @param max The maximum number of samples to visit.
+     * @param visitor The visitor, called while holding the lock of the buffer.
+     * @return The number of visited samples.
+     */
+    synchronized int read(final long from, final long to, final boolean forward, final int max, final Visitor visitor) {
+        if (from > to) {
+            return 0;
+        }
+
+        // index of the first sample at or after 'from', and the first one after 'to'
+        var start = search(from);
+        var end = search(to == Long.MAX_VALUE ? to : to + 1);
+        var n = (int) Math.min(end - start, max);
+
+        for (int i = 0; i < n; i++) {
+            var slot = (int) ((forward ? start + i : end - 1 - i) % this.capacity);
+            visitor.accept(time(slot), value(slot));
+        }
+        return n;
+    }
+
+    /**
+     * Find the first retained sample at or after a timestamp.
+     *
+     * @return The index of the sample, {@link #count} if there is none.
+     */
+    private long search(final long time) {
+        var low = Math.max(0, this.count - this.capacity);
+        var high = this.count;
+        while (low < high) {
+            var mid = (low + high) >>> 1;
+            if (time((int) (mid % this.capacity)) < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * A buffer on the heap, growing up to its capacity, so variables which rarely change stay small.
+     */
+    static final class Heap extends HistoryBuffer {
+
+        private static final int INITIAL_SIZE = 64;
+
+        /**
+         * Timestamps and raw bits of the values, interleaved.
+         */
+        private long[] samples;
+
+        Heap(final DeviceModel.Type type, final int capacity) {
+            super(type, capacity);
+            this.samples = new long[2 * Math.min(capacity, INITIAL_SIZE)];
+        }
+
+        @Override
+        protected long time(final int slot) {
+            return this.samples[2 * slot];
+        }
+
+        @Override
+        protected double value(final int slot) {
+            return Double.longBitsToDouble(this.samples[2 * slot + 1]);
+        }
+
+        @Override
+        protected void set(final int slot, final long time, final double value) {
+            if (2 * slot >= this.samples.length) {
+                // only happens while the buffer wasn't full yet, as slots are consecutive until then
+                this.samples = Arrays.copyOf(this.samples, (int) Math.min(2L * this.samples.length, 2L * getCapacity()));
+            }
+            this.samples[2 * slot] = time;
+            this.samples[2 * slot + 1] = Double.doubleToRawLongBits(value);
+        }
+    }
+
+    /**
+     * A buffer in a region of a memory-mapped file, see {@link HistoryStore}.
+     */
+    static final class Mapped extends HistoryBuffer {
+
+        private final ByteBuffer segment;
+        private final int offset;
+
+        Mapped(final DeviceModel.Type type, final int capacity, final ByteBuffer segment, final int offset) {
+            super(type, capacity);
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        @Override
+        protected long time(final int slot) {
+            return this.segment.getLong(this.offset + slot * HistoryStore.SAMPLE_SIZE);
+        }
+
+        @Override
+        protected double value(final int slot) {
+            return this.segment.getDouble(this.offset + slot * HistoryStore.SAMPLE_SIZE + Long.BYTES);
+        }
+
+        @Override
+        protected void set(final int slot, final long time, final double value) {
+            this.segment.putLong(this.offset + slot * HistoryStore.SAMPLE_SIZE, time);
+            this.segment.putDouble(this.offset + slot * HistoryStore.SAMPLE_SIZE + Long.BYTES, value);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package org.omp.opcua.test.server.simulation;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.milo.opcua.sdk.server.api.services.AttributeHistoryServices.HistoryReadContext;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.serialization.SerializationContext;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExtensionObject;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryData;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadDetails;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadValueId;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadProcessedDetails;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadRawModifiedDetails;
+
+/**
+ * Serves HistoryRead requests from a {@link HistoryStore}: raw values, and processed values for a few aggregates.
+ * <p>
+ * Continuation points are stateless: they hold the timestamp to resume at, and the client sends the original request
+ * again, so there is nothing to release.
+ */
+class HistoryReader {
+
+    /**
+     * A good status, marked as calculated by the historian.
+     */
+    private static final StatusCode CALCULATED = new StatusCode(0x0000_0401L);
+
+    /**
+     * Timestamps of the history are in 100 ns units, processing intervals in milliseconds.
+     */
+    private static final long TICKS_PER_MILLISECOND = 10_000;
+
+    enum Aggregate {
+        COUNT(Identifiers.AggregateFunction_Count),
+        MINIMUM(Identifiers.AggregateFunction_Minimum),
+        MAXIMUM(Identifiers.AggregateFunction_Maximum),
+        AVERAGE(Identifiers.AggregateFunction_Average),
+        START(Identifiers.AggregateFunction_Start),
+        END(Identifiers.AggregateFunction_End),
+        RANGE(Identifiers.AggregateFunction_Range),
+        DELTA(Identifiers.AggregateFunction_Delta),
+        ;
+
+        private final NodeId nodeId;
+
+        Aggregate(final NodeId nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        static Aggregate of(final NodeId nodeId) {
+            for (var aggregate : values()) {
+                if (aggregate.nodeId.equals(nodeId)) {
+                    return aggregate;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Compute the aggregate of an interval.
+         *
+         * @return The value, or {@code null} if the interval has no data.
+         */
+        Variant compute(final DeviceModel.Type type, final Interval interval) {
+            if (interval.count == 0) {
+                return this == COUNT ? new Variant(0) : null;
+            }
+            switch (this) {
+                case COUNT:
+                    return new Variant(interval.count);
+                case MINIMUM:
+                    return new Variant(type.box(interval.min));
+                case MAXIMUM:
+                    return new Variant(type.box(interval.max));
+                case AVERAGE:
+                    return new Variant(interval.sum / interval.count);
+                case START:
+                    return new Variant(type.box(interval.first));
+                case END:
+                    return new Variant(type.box(interval.last));
+                case RANGE:
+                    return new Variant(interval.max - interval.min);
+                case DELTA:
+                default:
+                    return new Variant(interval.last - interval.first);
+            }
+        }
+
+        /**
+         * Check if the result is a value of the variable, or calculated from its values.
+         */
+        boolean isCalculated() {
+            return this == COUNT || this == AVERAGE || this == RANGE || this == DELTA;
+        }
+    }
+
+    private static final class Interval {
+        int count;
+        double sum;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double first;
+        double last;
+
+        void add(final double value) {
+            if (this.count == 0) {
+                this.first = value;
+            }
+            this.count++;
+            this.sum += value;
+            this.min = Math.min(this.min, value);
+            this.max = Math.max(this.max, value);
+            this.last = value;
+        }
+    }
+
+    private final HistoryStore store;
+    private final HistoryRequests requests;
+    private final int maxValuesPerNode;
+
+    HistoryReader(final HistoryStore store, final HistoryRequests requests, final int maxValuesPerNode) {
+        if (maxValuesPerNode <= 0) {
+            throw new IllegalArgumentException("Maximum values per node must be positive: " + maxValuesPerNode);
+        }
+        this.store = store;
+        this.requests = requests;
+        this.maxValuesPerNode = maxValuesPerNode;
+    }
+
+    void read(final HistoryReadContext context, final HistoryReadDetails details, final TimestampsToReturn timestamps, final List<HistoryReadValueId> readValueIds) {
+        if (timestamps == TimestampsToReturn.Neither) {
+            context.failure(StatusCodes.Bad_TimestampsToReturnInvalid);
+            return;
+        }
+
+        var serialization = context.getServer().getSerializationContext();
+        var results = new ArrayList<HistoryReadResult>(readValueIds.size());
+
+        for (int i = 0; i < readValueIds.size(); i++) {
+            var readValueId = readValueIds.get(i);
+            var buffer = this.store.get(readValueId.getNodeId());
+
+            if (buffer == null) {
+                results.add(failure(StatusCodes.Bad_HistoryOperationUnsupported));
+            } else if (details instanceof ReadRawModifiedDetails) {
+                results.add(readRaw((ReadRawModifiedDetails) details, timestamps, buffer, readValueId.getContinuationPoint(), serialization));
+            } else if (details instanceof ReadProcessedDetails) {
+                var processed = (ReadProcessedDetails) details;
+                var aggregates = processed.getAggregateType();
+                // the aggregates are listed by the position in the whole request, which may span namespaces
+                var position = this.requests.get(readValueId);
+                var index = position != null ? position.index : i;
+                var count = position != null ? position.count : readValueIds.size();
+                if (aggregates == null || aggregates.length != count) {
+                    results.add(failure(StatusCodes.Bad_AggregateListMismatch));
+                } else {
+                    results.add(readProcessed(processed, Aggregate.of(aggregates[index]), timestamps, buffer, readValueId.getContinuationPoint(), serialization));
+                }
+            } else {
+                results.add(failure(StatusCodes.Bad_HistoryOperationUnsupported));
+            }
+        }
+
+        context.success(results);
+    }
+
+    /**
+     * Read raw values. Values of the start time are included, values of the end time aren't. If the start time is
+     * after the end time, or missing, values get returned newest first.
+     */
+    private HistoryReadResult readRaw(
+            final ReadRawModifiedDetails details,
+            final TimestampsToReturn timestamps,
+            final HistoryBuffer buffer,
+            final ByteString continuationPoint,
+            final SerializationContext serialization
+    ) {
+        if (Boolean.TRUE.equals(details.getIsReadModified())) {
+            // values are never modified
+            return success(new DataValue[0], null, serialization);
+        }
+
+        var hasStart = isSpecified(details.getStartTime());
+        var hasEnd = isSpecified(details.getEndTime());
+        if (!hasStart && !hasEnd) {
+            return failure(StatusCodes.Bad_HistoryOperationInvalid);
+        }
+
+        var start = hasStart ? details.getStartTime().getUtcTime() : Long.MIN_VALUE;
+        var end = hasEnd ? details.getEndTime().getUtcTime() : Long.MAX_VALUE;
+        var forward = hasStart && start <= end;
+
+        long from;
+        long to;
+        if (forward) {
+            from = start;
+            to = hasEnd && end > start ? end - 1 : end;
+        } else {
+            from = hasStart && hasEnd ? end + 1 : Long.MIN_VALUE;
+            to = hasStart ? start : end;
+        }
+
+        if (continuationPoint != null && continuationPoint.isNotNull()) {
+            var resume = decode(continuationPoint);
+            if (resume == null) {
+                return failure(StatusCodes.Bad_ContinuationPointInvalid);
+            }
+            if (forward) {
+                from = resume;
+            } else {
+                to = resume;
+            }
+        }
+
+        var requested = details.getNumValuesPerNode() != null ? details.getNumValuesPerNode().longValue() : 0;
+        var limit = requested > 0 ? (int) Math.min(requested, this.maxValuesPerNode) : this.maxValuesPerNode;
+
+        // read one more value, to know if there are more
+        var values = new ArrayList<DataValue>(Math.min(limit + 1, buffer.getCapacity()));
+        var type = buffer.getType();
+        buffer.read(from, to, forward, limit + 1, (time, value) -> values.add(dataValue(new Variant(type.box(value)), StatusCode.GOOD, time, timestamps)));
+
+        ByteString next = null;
+        if (values.size() > limit) {
+            values.remove(limit);
+            var last = values.get(limit - 1).getSourceTime() != null
+                    ? values.get(limit - 1).getSourceTime().getUtcTime()
+                    : values.get(limit - 1).getServerTime().getUtcTime();
+            next = encode(forward ? last + 1 : last - 1);
+        }
+
+        return success(values.toArray(new DataValue[0]), next, serialization);
+    }
+
+    /**
+     * Read processed values, for intervals from the start time to the end time. A processing interval of {@code 0}
+     * means a single interval.
+     */
+    private HistoryReadResult readProcessed(
+            final ReadProcessedDetails details,
+            final Aggregate aggregate,
+            final TimestampsToReturn timestamps,
+            final HistoryBuffer buffer,
+            final ByteString continuationPoint,
+            final SerializationContext serialization
+    ) {
+        if (aggregate == null) {
+            return failure(StatusCodes.Bad_AggregateNotSupported);
+        }
+        if (!isSpecified(details.getStartTime()) || !isSpecified(details.getEndTime())) {
+            return failure(StatusCodes.Bad_InvalidTimestampArgument);
+        }
+
+        var start = details.getStartTime().getUtcTime();
+        var end = details.getEndTime().getUtcTime();
+        if (start >= end) {
+            // intervals in reverse order aren't supported
+            return failure(StatusCodes.Bad_InvalidTimestampArgument);
+        }
+
+        var processingInterval = details.getProcessingInterval() != null ? details.getProcessingInterval() : 0;
+        var length = processingInterval > 0 ? Math.max(1, (long) (processingInterval * TICKS_PER_MILLISECOND)) : end - start;
+
+        var from = start;
+        if (continuationPoint != null && continuationPoint.isNotNull()) {
+            var resume = decode(continuationPoint);
+            if (resume == null || resume < start || resume >= end) {
+                return failure(StatusCodes.Bad_ContinuationPointInvalid);
+            }
+            from = resume;
+        }
+
+        var count = (int) Math.min((end - from + length - 1) / length, this.maxValuesPerNode);
+        var to = Math.min(end, from + count * length);
+
+        var intervals = new Interval[count];
+        for (int i = 0; i < count; i++) {
+            intervals[i] = new Interval();
+        }
+        var intervalStart = from;
+        buffer.read(from, to - 1, true, Integer.MAX_VALUE, (time, value) -> intervals[(int) ((time - intervalStart) / length)].add(value));
+
+        var values = new DataValue[count];
+        for (int i = 0; i < count; i++) {
+            var time = from + i * length;
+            var value = aggregate.compute(buffer.getType(), intervals[i]);
+            if (value == null) {
+                values[i] = dataValue(Variant.NULL_VALUE, new StatusCode(StatusCodes.Bad_NoData), time, timestamps);
+            } else {
+                values[i] = dataValue(value, aggregate.isCalculated() ? CALCULATED : StatusCode.GOOD, time, timestamps);
+            }
+        }
+
+        return success(values, to < end ? encode(to) : null, serialization);
+    }
+
+    private static boolean isSpecified(final DateTime time) {
+        return time != null && !time.isNull();
+    }
+
+    private static DataValue dataValue(final Variant value, final StatusCode status, final long time, final TimestampsToReturn timestamps) {
+        var dateTime = new DateTime(time);
+        var source = timestamps == TimestampsToReturn.Source || timestamps == TimestampsToReturn.Both ? dateTime : null;
+        var server = timestamps == TimestampsToReturn.Server || timestamps == TimestampsToReturn.Both ? dateTime : null;
+        return new DataValue(value, status, source, server);
+    }
+
+    private static ByteString encode(final long time) {
+        return new ByteString(ByteBuffer.allocate(Long.BYTES).putLong(time).array());
+    }
+
+    private static Long decode(final ByteString continuationPoint) {
+        if (continuationPoint.length() != Long.BYTES) {
+            return null;
+        }
+        return ByteBuffer.wrap(continuationPoint.bytes()).getLong();
+    }
+
+    private static HistoryReadResult success(final DataValue[] values, final ByteString continuationPoint, final SerializationContext serialization) {
+        return new HistoryReadResult(
+                StatusCode.GOOD,
+                continuationPoint != null ? continuationPoint : ByteString.NULL_VALUE,
+                ExtensionObject.encode(serialization, new HistoryData(values)));
+    }
+
+    private static HistoryReadResult failure(final long statusCode) {
+        return new HistoryReadResult(new StatusCode(statusCode), ByteString.NULL_VALUE, null);
+    }
+}
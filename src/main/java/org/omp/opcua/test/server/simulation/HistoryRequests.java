@@ -0,0 +1,90 @@
+package org.omp.opcua.test.server.simulation;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadValueId;
+import org.eclipse.milo.opcua.stack.server.services.ServiceRequest;
+import org.eclipse.milo.opcua.stack.server.services.ServiceRequestHandler;
+
+/**
+ * The positions of the nodes of HistoryRead requests in progress.
+ * <p>
+ * Milo passes each namespace only its own nodes of a request, but the aggregates of a processed read are listed by
+ * the position of a node in the whole request. The requests get tracked on their way to Milo, by the identity of
+ * their nodes, until they got answered.
+ */
+final class HistoryRequests {
+
+    static final class Position {
+        final int index;
+        final int count;
+
+        Position(final int index, final int count) {
+            this.index = index;
+            this.count = count;
+        }
+    }
+
+    private final Map<HistoryReadValueId, Position> positions = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private HistoryRequests() {
+    }
+
+    /**
+     * Track the HistoryRead requests of all endpoints. Must be called before clients connect.
+     */
+    static HistoryRequests register(final OpcUaServer server) {
+        var result = new HistoryRequests();
+        var stackServer = server.getStackServer();
+
+        var paths = new HashSet<String>();
+        for (var endpoint : server.getConfig().getEndpoints()) {
+            paths.add(endpoint.getPath());
+        }
+        for (var path : paths) {
+            var handler = stackServer.getServiceHandler(path, HistoryReadRequest.TYPE_ID);
+            if (handler != null) {
+                stackServer.addServiceHandler(path, HistoryReadRequest.TYPE_ID, result.tracking(handler));
+            }
+        }
+
+        return result;
+    }
+
+    private ServiceRequestHandler tracking(final ServiceRequestHandler handler) {
+        return request -> {
+            track(request);
+            handler.handle(request);
+        };
+    }
+
+    private void track(final ServiceRequest request) {
+        var nodes = ((HistoryReadRequest) request.getRequest()).getNodesToRead();
+        if (nodes == null || nodes.length == 0) {
+            return;
+        }
+
+        for (int i = 0; i < nodes.length; i++) {
+            this.positions.put(nodes[i], new Position(i, nodes.length));
+        }
+        request.getFuture().whenComplete((response, failure) -> {
+            for (var node : nodes) {
+                this.positions.remove(node);
+            }
+        });
+    }
+
+    /**
+     * The position of a node in its request.
+     *
+     * @return The position, or {@code null} if the node isn't part of a tracked request.
+     */
+    Position get(final HistoryReadValueId node) {
+        return this.positions.get(node);
+    }
+}
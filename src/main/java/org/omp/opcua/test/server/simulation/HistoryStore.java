@@ -0,0 +1,159 @@
+package org.omp.opcua.test.server.simulation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * The history of simulated variables, one {@link HistoryBuffer} per variable.
+ * <p>
+ * Each buffer holds up to one sample per tick for the configured retention. Buffers live on the heap, or, if a file
+ * is configured, in fixed size regions of that file, which gets memory-mapped in segments. The file is sparse, only
+ * the pages of recorded samples take up space, and it gets truncated on startup, history doesn't survive a restart.
+ */
+public class HistoryStore implements MeterBinder, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(HistoryStore.class);
+
+    /**
+     * The size of a sample: a timestamp and a value.
+     */
+    static final int SAMPLE_SIZE = Long.BYTES + Double.BYTES;
+
+    /**
+     * The size of a mapped segment of the file, regions never cross segments.
+     */
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private final String name;
+    private final int capacity;
+    private final Map<NodeId, HistoryBuffer> buffers = new ConcurrentHashMap<>();
+    private final LongAdder samples = new LongAdder();
+
+    private final FileChannel channel;
+    private final int regionSize;
+    private final int regionsPerSegment;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private int regions;
+
+    public HistoryStore(final String name, final SimulationConfiguration.History configuration, final Duration tickPeriod) {
+        this.name = name;
+
+        var capacity = configuration.retention().toNanos() / Math.max(1, tickPeriod.toNanos()) + 1;
+        if (capacity > Integer.MAX_VALUE / SAMPLE_SIZE) {
+            throw new IllegalArgumentException(String.format("History retention of %s is too long for a tick period of %s", configuration.retention(), tickPeriod));
+        }
+        this.capacity = (int) capacity;
+        this.regionSize = this.capacity * SAMPLE_SIZE;
+        this.regionsPerSegment = (int) Math.max(1, SEGMENT_SIZE / this.regionSize);
+
+        if (configuration.file().isPresent()) {
+            var path = Path.of(configuration.file().get());
+            try {
+                this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open history file: " + path, e);
+            }
+            LOG.info("History of '{}': {} samples per variable, mapped to {}", name, this.capacity, path);
+        } else {
+            this.channel = null;
+            LOG.info("History of '{}': {} samples per variable, on the heap", name, this.capacity);
+        }
+    }
+
+    /**
+     * Create the buffer of a variable.
+     *
+     * @param nodeId The node of the variable.
+     * @param type The type of the variable.
+     * @return The buffer.
+     */
+    HistoryBuffer register(final NodeId nodeId, final DeviceModel.Type type) {
+        HistoryBuffer buffer;
+        if (this.channel == null) {
+            buffer = new HistoryBuffer.Heap(type, this.capacity);
+        } else {
+            buffer = allocate(type);
+        }
+        this.buffers.put(nodeId, buffer);
+        return buffer;
+    }
+
+    private synchronized HistoryBuffer allocate(final DeviceModel.Type type) {
+        var region = this.regions++;
+        var segment = region / this.regionsPerSegment;
+
+        if (segment == this.segments.size()) {
+            var size = (long) this.regionsPerSegment * this.regionSize;
+            try {
+                this.segments.add(this.channel.map(FileChannel.MapMode.READ_WRITE, segment * size, size));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map history file", e);
+            }
+        }
+
+        return new HistoryBuffer.Mapped(type, this.capacity, this.segments.get(segment), (region % this.regionsPerSegment) * this.regionSize);
+    }
+
+    /**
+     * Get the buffer of a variable.
+     *
+     * @return The buffer, or {@code null} if the node has no history.
+     */
+    HistoryBuffer get(final NodeId nodeId) {
+        return this.buffers.get(nodeId);
+    }
+
+    void record(final HistoryBuffer buffer, final DataValue value) {
+        if (buffer.record(value)) {
+            this.samples.increment();
+        }
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        var tags = Tags.of("namespace", this.name);
+
+        FunctionCounter.builder("omp.simulation.history.samples", this.samples, LongAdder::sum)
+                .tags(tags)
+                .description("Samples recorded to the history")
+                .register(registry);
+
+        Gauge.builder("omp.simulation.history.variables", this.buffers, Map::size)
+                .tags(tags)
+                .description("Variables with a history")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        if (this.channel == null) {
+            return;
+        }
+        try {
+            // mapped segments stay valid
+            this.channel.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close history file", e);
+        }
+    }
+}
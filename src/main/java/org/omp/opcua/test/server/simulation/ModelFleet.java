@@ -0,0 +1,218 @@
+package org.omp.opcua.test.server.simulation;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.omp.opcua.test.server.RandomSource;
+
+/**
+ * A fleet of devices of a {@link DeviceModel}, stored as primitive columns.
+ * <p>
+ * The variables of a device are stored next to each other, in one array for the model state, and one for the
+ * published values, which may lag behind the state when they have a {@link Deadband}. A tick runs the compiled update
+ * expressions of the model, it doesn't allocate anything, values are only boxed when they get read.
+ * <p>
+ * Each device is guarded by a {@link SequenceLocks sequence lock}, so readers never lock.
+ */
+public class ModelFleet implements Fleet {
+
+    private final DeviceModel model;
+    private final int size;
+    private final int stride;
+    private final SimulationClock clock;
+
+    private final double[] state;
+    private final double[] values;
+    private final long[] timestamps;
+    private final SequenceLocks locks;
+
+    /**
+     * Per device random seeds, see {@link RandomSource#nextGaussian(long[], int)}.
+     */
+    private final long[] seeds;
+
+    private final DeviceModel.Type[] types;
+    private final Deadband[] deadbands;
+    private final int[] updated;
+    private final Expression[] updates;
+
+    /**
+     * Change listeners, indexed by variable and device. Allocated on first use.
+     */
+    private final Runnable[][] listeners;
+
+    public ModelFleet(final DeviceModel model, final int size, final RandomSource random) {
+        this(model, size, 0, random, SimulationClock.WALL);
+    }
+
+    /**
+     * @param first The number of the first device of this shard, the random values of a device derive from it.
+     */
+    public ModelFleet(final DeviceModel model, final int size, final int first, final RandomSource random, final SimulationClock clock) {
+        this.model = model;
+        this.clock = clock;
+        this.size = size;
+        this.stride = model.getVariables().size();
+
+        this.state = new double[size * this.stride];
+        this.values = new double[size * this.stride];
+        this.timestamps = new long[size * this.stride];
+        this.locks = new SequenceLocks(size);
+        this.seeds = new long[size];
+
+        this.types = new DeviceModel.Type[this.stride];
+        this.deadbands = new Deadband[this.stride];
+        for (var variable : model.getVariables()) {
+            this.types[variable.getIndex()] = variable.getType();
+            this.deadbands[variable.getIndex()] = variable.getDeadband();
+        }
+        this.updated = model.getUpdated();
+        this.updates = model.getUpdates();
+        this.listeners = new Runnable[this.stride][];
+
+        var initials = model.getInitials();
+        var now = clock.now();
+        for (int i = 0; i < size; i++) {
+            this.seeds[i] = random.derive(first + i).nextLong();
+
+            var offset = i * this.stride;
+            for (int v = 0; v < this.stride; v++) {
+                var value = initials[v].evaluate(this.state, offset, this.seeds, i);
+                this.state[offset + v] = value;
+                this.values[offset + v] = value;
+                this.timestamps[offset + v] = now;
+            }
+        }
+    }
+
+    public DeviceModel getModel() {
+        return this.model;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public void tick(final int from, final int to) {
+        var now = this.clock.now();
+        for (int i = from; i < to; i++) {
+            tick(i, now);
+        }
+    }
+
+    private void tick(final int i, final long now) {
+        var offset = i * this.stride;
+        long changed = 0;
+
+        this.locks.beginWrite(i);
+        try {
+            for (int u = 0; u < this.updates.length; u++) {
+                var v = this.updated[u];
+                var value = this.updates[u].evaluate(this.state, offset, this.seeds, i);
+                this.state[offset + v] = value;
+                if (this.deadbands[v].exceeds(this.values[offset + v], value)) {
+                    this.values[offset + v] = value;
+                    this.timestamps[offset + v] = now;
+                    changed |= 1L << v;
+                }
+            }
+        } finally {
+            this.locks.endWrite(i);
+        }
+
+        fireChanged(changed, i);
+    }
+
+    /**
+     * Notify listeners of changed variables. Must be called after the write stamp was released, as listeners read
+     * the new values.
+     */
+    private void fireChanged(final long changed, final int i) {
+        var remaining = changed;
+        while (remaining != 0) {
+            var v = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+
+            var listeners = this.listeners[v];
+            if (listeners != null && listeners[i] != null) {
+                listeners[i].run();
+            }
+        }
+    }
+
+    /**
+     * Get the published value of a variable.
+     *
+     * @param device The index of the device.
+     * @param variable The index of the variable in the model.
+     * @return The value.
+     */
+    public DataValue getValue(final int device, final int variable) {
+        var index = device * this.stride + variable;
+
+        double value;
+        long timestamp;
+        long stamp;
+        do {
+            stamp = this.locks.beginRead(device);
+            value = this.values[index];
+            timestamp = this.timestamps[index];
+        } while (!this.locks.validate(device, stamp));
+
+        return new DataValue.Builder()
+                .setValue(new Variant(this.types[variable].box(value)))
+                .setSourceTime(new DateTime(timestamp))
+                .build();
+    }
+
+    /**
+     * Write the value of a variable, e.g. a setpoint. Sets both the state and the published value.
+     *
+     * @param device The index of the device.
+     * @param variable The index of the variable in the model.
+     * @param dataValue The new value, ignored if it can't be converted to the type of the variable.
+     */
+    public void setValue(final int device, final int variable, final DataValue dataValue) {
+        var value = this.types[variable].unbox(dataValue.getValue().getValue());
+        if (value == null) {
+            return;
+        }
+
+        var index = device * this.stride + variable;
+        boolean changed = false;
+
+        this.locks.beginWrite(device);
+        try {
+            this.state[index] = value;
+            if (Deadband.NONE.exceeds(this.values[index], value)) {
+                this.values[index] = value;
+                this.timestamps[index] = this.clock.now();
+                changed = true;
+            }
+        } finally {
+            this.locks.endWrite(device);
+        }
+
+        if (changed) {
+            fireChanged(1L << variable, device);
+        }
+    }
+
+    /**
+     * Set a listener, which gets called whenever the published value of a variable changed.
+     *
+     * @param device The index of the device.
+     * @param variable The index of the variable in the model.
+     * @param listener The listener, may be {@code null}.
+     */
+    public synchronized void setChangeListener(final int device, final int variable, final Runnable listener) {
+        var listeners = this.listeners[variable];
+        if (listeners == null) {
+            listeners = new Runnable[this.size];
+            this.listeners[variable] = listeners;
+        }
+        listeners[device] = listener;
+    }
+}
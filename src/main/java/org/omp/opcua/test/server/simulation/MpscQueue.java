@@ -0,0 +1,83 @@
+package org.omp.opcua.test.server.simulation;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * An unbounded, lock-free queue for multiple producers and a single consumer.
+ * <p>
+ * Producers swap themselves in as the new tail, and then link the previous tail to their node, which is a single
+ * atomic operation, no matter how many producers there are. The consumer never writes to shared state, apart from
+ * its own head.
+ * <p>
+ * A producer which got preempted between swapping the tail and linking it hides the nodes after its own from the
+ * consumer, until it links its node. The consumer then stops early, and picks up these nodes on its next drain.
+ *
+ * @param <T> The type of the elements.
+ */
+final class MpscQueue<T> {
+
+    private static final VarHandle NEXT;
+
+    static {
+        try {
+            NEXT = MethodHandles.lookup().findVarHandle(Node.class, "next", Node.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final class Node<T> {
+        private T value;
+        @SuppressWarnings("unused")
+        private volatile Node<T> next;
+
+        Node(final T value) {
+            this.value = value;
+        }
+    }
+
+    private final AtomicReference<Node<T>> tail;
+    /**
+     * The last consumed node, only accessed by the consumer.
+     */
+    private Node<T> head;
+
+    MpscQueue() {
+        var stub = new Node<T>(null);
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+    }
+
+    /**
+     * Add an element. May be called by any thread.
+     */
+    void offer(final T value) {
+        var node = new Node<>(value);
+        var previous = this.tail.getAndSet(node);
+        NEXT.setRelease(previous, node);
+    }
+
+    /**
+     * Remove all visible elements, in the order they got offered. Must only be called by the consumer.
+     *
+     * @param consumer The consumer of the elements.
+     * @return The number of elements.
+     */
+    @SuppressWarnings("unchecked")
+    int drain(final Consumer<T> consumer) {
+        int result = 0;
+        Node<T> next;
+        while ((next = (Node<T>) NEXT.getAcquire(this.head)) != null) {
+            var value = next.value;
+            // the node becomes the new stub, don't hold on to the value
+            next.value = null;
+            this.head = next;
+            consumer.accept(value);
+            result++;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,50 @@
+package org.omp.opcua.test.server.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.omp.opcua.test.server.RandomSource;
+
+/**
+ * A fleet backed by one {@link Device1} instance per device.
+ */
+public class ObjectDeviceFleet implements DeviceFleet {
+
+    private final List<Device1> devices;
+
+    public ObjectDeviceFleet(final int size, final RandomSource random) {
+        this(size, random, Map.of());
+    }
+
+    public ObjectDeviceFleet(final int size, final RandomSource random, final Map<SimulatedDevice.Variable, Deadband> deadbands) {
+        this(size, 0, random, deadbands, SimulationClock.WALL);
+    }
+
+    /**
+     * @param first The number of the first device of this shard, see {@link ColumnarDeviceFleet}.
+     */
+    public ObjectDeviceFleet(final int size, final int first, final RandomSource random, final Map<SimulatedDevice.Variable, Deadband> deadbands, final SimulationClock clock) {
+        this.devices = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            this.devices.add(new Device1(random.derive(first + i), deadbands, clock));
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.devices.size();
+    }
+
+    @Override
+    public SimulatedDevice device(final int index) {
+        return this.devices.get(index);
+    }
+
+    @Override
+    public void tick(final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            this.devices.get(i).tick();
+        }
+    }
+}
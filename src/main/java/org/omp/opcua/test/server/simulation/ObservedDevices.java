@@ -0,0 +1,239 @@
+package org.omp.opcua.test.server.simulation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilter;
+import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilterContext;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Ticks only the devices of a fleet which clients observe, that is which have a monitored variable.
+ * <p>
+ * Every device counts the ticks it got. Devices no one observes fall behind, and catch up when they get read or
+ * written, or become observed again, by running the ticks they missed, up to a maximum. Older ticks get skipped, as
+ * if the device had been paused. A device gets claimed while it is ticked, so it never gets ticked by two threads at
+ * once, and never gets the same tick twice.
+ */
+final class ObservedDevices implements MeterBinder {
+
+    /**
+     * Set in the tick count of a device while it gets ticked.
+     */
+    private static final long CLAIMED = Long.MIN_VALUE;
+
+    private final int maxCatchUp;
+    private final AtomicInteger observed = new AtomicInteger();
+    private final LongAdder catchUps = new LongAdder();
+
+    private Fleet fleet;
+    /**
+     * Observed variables, per device.
+     */
+    private AtomicIntegerArray observers;
+    /**
+     * Ticks, per device.
+     */
+    private AtomicLongArray ticks;
+    /**
+     * Ticks completed by the scheduler.
+     */
+    private volatile long completed;
+
+    /**
+     * The value of a variable of a device, which catches up the device when read. Also keeps the device of the
+     * variable, see {@link #deviceOf(UaNode)}.
+     */
+    final class DeviceValue implements AttributeFilter {
+
+        private final int device;
+        private final Supplier<DataValue> extractor;
+
+        DeviceValue(final int device, final Supplier<DataValue> extractor) {
+            this.device = device;
+            this.extractor = extractor;
+        }
+
+        @Override
+        public Object getAttribute(final AttributeFilterContext.GetAttributeContext ctx, final AttributeId attributeId) {
+            if (attributeId == AttributeId.Value) {
+                catchUp(this.device);
+                return this.extractor.get();
+            }
+            return ctx.getAttribute(attributeId);
+        }
+    }
+
+    ObservedDevices(final int maxCatchUp) {
+        this.maxCatchUp = Math.max(0, maxCatchUp);
+    }
+
+    /**
+     * Attach the fleet, before registering its devices.
+     */
+    void attach(final Fleet fleet) {
+        this.fleet = fleet;
+        this.observers = new AtomicIntegerArray(fleet.size());
+        this.ticks = new AtomicLongArray(fleet.size());
+    }
+
+    /**
+     * The device of a variable.
+     *
+     * @return The index of the device in the ticked fleet, or {@code -1} if the node isn't a variable of a device.
+     */
+    static int deviceOf(final UaNode node) {
+        if (!(node instanceof UaVariableNode)) {
+            return -1;
+        }
+        for (var filter : ((UaVariableNode) node).getFilterChain().getFilters()) {
+            if (filter instanceof DeviceValue) {
+                return ((DeviceValue) filter).device;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Track a variable of a device becoming observed, or no longer being observed.
+     *
+     * @param device The index of the device, in the ticked fleet.
+     */
+    void setObserved(final int device, final boolean observed) {
+        var count = this.observers.addAndGet(device, observed ? 1 : -1);
+        if (observed && count == 1) {
+            this.observed.incrementAndGet();
+        } else if (!observed && count == 0) {
+            this.observed.decrementAndGet();
+        }
+    }
+
+    /**
+     * Catch up a device with the completed ticks, before reading or writing it.
+     * <p>
+     * Observed devices get ticked by the scheduler, and are read as they are, instead of waiting for a tick in
+     * progress.
+     *
+     * @param device The index of the device, in the ticked fleet.
+     */
+    void catchUp(final int device) {
+        var target = this.completed;
+        while (this.observers.get(device) == 0) {
+            var done = this.ticks.get(device);
+            if (done >= target) {
+                return;
+            }
+            if (done < 0) {
+                // claimed by another read or write, or by the scheduler if it just stopped being observed
+                Thread.onSpinWait();
+                continue;
+            }
+            if (tryCatchUp(device, done, target)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Catch up a device which just became observed, before the scheduler claims it.
+     */
+    private void catchUp(final int device, final long target) {
+        while (true) {
+            var done = this.ticks.get(device);
+            if (done >= target) {
+                return;
+            }
+            if (done < 0) {
+                // claimed by a read or write catching it up
+                Thread.onSpinWait();
+                continue;
+            }
+            if (tryCatchUp(device, done, target)) {
+                return;
+            }
+        }
+    }
+
+    private boolean tryCatchUp(final int device, final long done, final long target) {
+        if (!this.ticks.compareAndSet(device, done, done | CLAIMED)) {
+            return false;
+        }
+        try {
+            var missed = (int) Math.min(target - done, this.maxCatchUp);
+            for (int i = 0; i < missed; i++) {
+                this.fleet.tick(device, device + 1);
+            }
+            this.catchUps.add(missed);
+        } finally {
+            this.ticks.set(device, target);
+        }
+        return true;
+    }
+
+    /**
+     * Tick the observed devices of a range, as part of the next tick of the scheduler.
+     * <p>
+     * Consecutive observed devices get ticked as one range, so a fully observed fleet gets ticked the same way as
+     * without this.
+     */
+    void tick(final int from, final int to) {
+        var previous = this.completed;
+
+        var i = from;
+        while (i < to) {
+            if (this.observers.get(i) == 0) {
+                i++;
+                continue;
+            }
+
+            var start = i;
+            while (i < to && this.observers.get(i) > 0) {
+                claim(i, previous);
+                i++;
+            }
+            try {
+                this.fleet.tick(start, i);
+            } finally {
+                for (int j = start; j < i; j++) {
+                    this.ticks.set(j, previous + 1);
+                }
+            }
+        }
+    }
+
+    private void claim(final int device, final long previous) {
+        do {
+            // devices which just became observed may need to catch up first
+            catchUp(device, previous);
+        } while (!this.ticks.compareAndSet(device, previous, previous | CLAIMED));
+    }
+
+    /**
+     * Complete a tick of the scheduler, after all ranges got ticked.
+     */
+    void completed() {
+        this.completed++;
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("omp.simulation.devices.observed", this.observed, AtomicInteger::get)
+                .description("Devices with a monitored variable, which get ticked")
+                .register(registry);
+
+        FunctionCounter.builder("omp.simulation.tick.catchups", this.catchUps, LongAdder::sum)
+                .description("Ticks run to catch up devices which weren't observed, when they got read or written")
+                .register(registry);
+    }
+}
@@ -0,0 +1,80 @@
+package org.omp.opcua.test.server.simulation;
+
+import java.time.Duration;
+
+/**
+ * A clock stepping one tick period per tick, no matter how long a tick takes in wall-clock time.
+ * <p>
+ * All values of a tick get the time of its step. Between ticks, the time advances with the wall clock, scaled by the
+ * time scale, but never reaches the time of the next step, so timestamps of client writes stay in order with the
+ * timestamps of the ticks.
+ */
+final class ScaledClock implements SimulationClock {
+
+    private static final class Step {
+        private final long time;
+        /**
+         * The wall-clock time the step got settled at, {@link Long#MIN_VALUE} while ticking.
+         */
+        private final long wallNanos;
+
+        Step(final long time, final long wallNanos) {
+            this.time = time;
+            this.wallNanos = wallNanos;
+        }
+    }
+
+    private final long stepTicks;
+    /**
+     * Simulated 100ns intervals per wall-clock nanosecond, {@code 0} to not advance between ticks.
+     */
+    private final double scale;
+
+    private volatile Step step;
+
+    /**
+     * Create a new clock.
+     *
+     * @param start The initial time, in OPC UA time.
+     * @param period The simulated time of a tick.
+     * @param timeScale The simulated time per wall-clock time, {@code 0} to only advance with ticks.
+     */
+    ScaledClock(final long start, final Duration period, final double timeScale) {
+        this.stepTicks = Math.max(1, period.toNanos() / 100);
+        this.scale = timeScale / 100;
+        this.step = new Step(start, System.nanoTime());
+    }
+
+    @Override
+    public long now() {
+        var step = this.step;
+        if (this.scale == 0 || step.wallNanos == Long.MIN_VALUE) {
+            return step.time;
+        }
+        var elapsed = (long) ((System.nanoTime() - step.wallNanos) * this.scale);
+        return step.time + Math.min(elapsed, this.stepTicks - 1);
+    }
+
+    /**
+     * Restart the clock at a time, advancing with the wall clock from now on.
+     *
+     * @param start The time, in OPC UA time.
+     */
+    void reset(final long start) {
+        this.step = new Step(start, System.nanoTime());
+    }
+
+    /**
+     * Advance to the next step, before ticking.
+     */
+    void advance() {
+        this.step = new Step(this.step.time + this.stepTicks, Long.MIN_VALUE);
+    }
+
+    /**
+     * Let the time advance with the wall clock again, after ticking.
+     */
+    void settle() {
+        this.step = new Step(this.step.time, System.nanoTime());
+    }
+}
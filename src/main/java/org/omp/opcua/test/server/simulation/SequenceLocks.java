@@ -0,0 +1,67 @@
+package org.omp.opcua.test.server.simulation;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Sequence locks, one per device.
+ * <p>
+ * Writers (the tick and client writes) take the stamp of the device, readers never lock, but retry if a write happened
+ * while they were reading.
+ */
+final class SequenceLocks {
+
+    private static final VarHandle STAMPS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * Per device stamps. Odd while a write is in progress.
+     */
+    private final long[] stamps;
+
+    SequenceLocks(final int size) {
+        this.stamps = new long[size];
+    }
+
+    /**
+     * Acquire the write stamp of a device.
+     * <p>
+     * There is at most one tick and the occasional client write competing for a device, so spinning is fine.
+     */
+    void beginWrite(final int i) {
+        while (true) {
+            var stamp = (long) STAMPS.getVolatile(this.stamps, i);
+            if ((stamp & 1) == 0 && STAMPS.compareAndSet(this.stamps, i, stamp, stamp + 1)) {
+                break;
+            }
+            Thread.onSpinWait();
+        }
+        VarHandle.storeStoreFence();
+    }
+
+    void endWrite(final int i) {
+        STAMPS.getAndAddRelease(this.stamps, i, 1L);
+    }
+
+    /**
+     * Start an optimistic read of a device. Waits for a write in progress to complete.
+     *
+     * @return The stamp to {@link #validate(int, long)} the read with.
+     */
+    long beginRead(final int i) {
+        while (true) {
+            var stamp = (long) STAMPS.getAcquire(this.stamps, i);
+            if ((stamp & 1) == 0) {
+                return stamp;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Check that a device wasn't written to since {@link #beginRead(int)}.
+     */
+    boolean validate(final int i, final long stamp) {
+        VarHandle.acquireFence();
+        return stamp == (long) STAMPS.getVolatile(this.stamps, i);
+    }
+}
@@ -0,0 +1,71 @@
+package org.omp.opcua.test.server.simulation;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+
+/**
+ * The OPC UA facing view of a single simulated device.
+ */
+public interface SimulatedDevice {
+
+    DataValue getTemperature();
+
+    DataValue getAmbientTemperature();
+
+    DataValue getAmbientTemperatureSetpoint();
+
+    void setAmbientTemperatureSetpoint(DataValue dataValue);
+
+    DataValue getPowerConsumption();
+
+    DataValue isActive();
+
+    void setActive(DataValue dataValue);
+
+    /**
+     * Set a listener, which gets called whenever the value of a variable changed.
+     *
+     * @param variable The variable to listen to.
+     * @param listener The listener, may be {@code null}.
+     */
+    void setChangeListener(Variable variable, Runnable listener);
+
+    enum Variable {
+        TEMPERATURE("temperature", true),
+        AMBIENT_TEMPERATURE("ambientTemperature", true),
+        AMBIENT_TEMPERATURE_SETPOINT("ambientTemperatureSetpoint", false),
+        POWER_CONSUMPTION("powerConsumption", true),
+        ACTIVE("active", false),
+        ;
+
+        private final String name;
+        private final boolean simulated;
+
+        Variable(final String name, final boolean simulated) {
+            this.name = name;
+            this.simulated = simulated;
+        }
+
+        /**
+         * The name of the variable, as used in its node id.
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Check if the value is computed by the simulation, instead of being written by clients.
+         */
+        public boolean isSimulated() {
+            return this.simulated;
+        }
+
+        public static Variable byName(final String name) {
+            for (var variable : values()) {
+                if (variable.name.equals(name)) {
+                    return variable;
+                }
+            }
+            throw new IllegalArgumentException("Unknown variable: " + name);
+        }
+    }
+}
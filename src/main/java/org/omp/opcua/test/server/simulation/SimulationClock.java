@@ -0,0 +1,31 @@
+package org.omp.opcua.test.server.simulation;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+
+/**
+ * The time of the simulation, used for the source timestamps of simulated values.
+ */
+@FunctionalInterface
+public interface SimulationClock {
+
+    /**
+     * Difference between the Java epoch and the OPC UA epoch, in 100ns intervals.
+     */
+    long EPOCH_DELTA = 116444736000000000L;
+
+    /**
+     * A clock following the wall clock, with millisecond precision, without allocating.
+     */
+    SimulationClock WALL = () -> System.currentTimeMillis() * 10_000L + EPOCH_DELTA;
+
+    /**
+     * Get the current time.
+     *
+     * @return The time, in {@link DateTime#getUtcTime() OPC UA time}.
+     */
+    long now();
+
+    default DateTime nowDateTime() {
+        return new DateTime(now());
+    }
+}
@@ -1,8 +1,234 @@
 package org.omp.opcua.test.server.simulation;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+
+import org.omp.opcua.test.server.PopulationConfiguration;
+
 import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
 
 @ConfigMapping(prefix = "omp.opcua.milo.simulation",  namingStrategy = ConfigMapping.NamingStrategy.VERBATIM)
 public interface SimulationConfiguration {
+    /**
+     * Number of {@link Device1} devices.
+     */
     int numberOfDevices();
+
+    /**
+     * A fixed seed for the simulation, to make runs reproducible.
+     */
+    OptionalLong seed();
+
+    /**
+     * The engine used to store and tick the device state.
+     */
+    @WithDefault("object")
+    Engine engine();
+
+    /**
+     * How subscriptions get notified about value changes.
+     */
+    @WithDefault("sampling")
+    Notifications notifications();
+
+    /**
+     * How client writes to control variables get applied.
+     */
+    @WithDefault("batched")
+    Writes writes();
+
+    Tick tick();
+
+    History history();
+
+    PopulationConfiguration population();
+
+    /**
+     * Deadbands of simulated variables, by variable name: {@code temperature}, {@code ambientTemperature} or
+     * {@code powerConsumption}.
+     */
+    Map<String, DeadbandConfiguration> deadbands();
+
+    /**
+     * Device models by name, each one adding its own devices to the fleet, see {@link DeviceModel}.
+     */
+    Map<String, Model> models();
+
+    interface Model {
+        @WithDefault("0")
+        int numberOfDevices();
+
+        /**
+         * The variables, updated in this order on each tick.
+         */
+        List<ModelVariable> variables();
+    }
+
+    interface ModelVariable {
+        String name();
+
+        Optional<String> label();
+
+        /**
+         * The folder of the device to put the variable into, the device folder itself if missing.
+         */
+        Optional<String> folder();
+
+        @WithDefault("double")
+        DeviceModel.Type type();
+
+        @WithDefault("read")
+        DeviceModel.Access access();
+
+        /**
+         * The expression of the initial value, evaluated once per device.
+         */
+        @WithDefault("0")
+        String initial();
+
+        /**
+         * The expression of the value after each tick. If missing, only clients change the value.
+         */
+        Optional<String> update();
+
+        OptionalDouble deadband();
+
+        @WithDefault("absolute")
+        Deadband.Type deadbandType();
+    }
+
+    interface DeadbandConfiguration {
+        @WithDefault("absolute")
+        Deadband.Type type();
+
+        /**
+         * The deadband, in units of the variable, or in percent.
+         */
+        double value();
+    }
+
+    interface Tick {
+        /**
+         * The simulated time between two simulation steps.
+         */
+        @WithDefault("1s")
+        Duration period();
+
+        /**
+         * Simulated time per wall-clock time, e.g. {@code 60} to simulate an hour per minute, with {@code scaled}
+         * pacing.
+         */
+        @WithDefault("1")
+        double timeScale();
+
+        @WithDefault("scaled")
+        Pacing pacing();
+
+        /**
+         * Number of ticks to run right away at startup, to reach a steady state. The simulation starts as many
+         * periods in the past, so it catches up with the wall clock, when running at a time scale of {@code 1}.
+         */
+        @WithDefault("0")
+        int fastForward();
+
+        /**
+         * Only tick devices with a monitored variable. Other devices catch up when they get read or written. Ignored
+         * when recording the history, which needs every tick of every device.
+         */
+        @WithDefault("true")
+        boolean onDemand();
+
+        /**
+         * The maximum number of ticks a device catches up on, older ticks get skipped.
+         */
+        @WithDefault("1000")
+        int maxCatchUp();
+
+        /**
+         * Number of threads ticking shards in parallel, defaults to the number of available processors.
+         */
+        OptionalInt parallelism();
+
+        /**
+         * The minimum number of devices in a shard, smaller fleets get ticked by fewer threads.
+         */
+        @WithDefault("1000")
+        int minShardSize();
+    }
+
+    interface History {
+        /**
+         * Record the history of simulated variables, and serve it with HistoryRead.
+         */
+        @WithDefault("false")
+        boolean enabled();
+
+        /**
+         * How long to keep samples, each variable has room for one sample per tick.
+         */
+        @WithDefault("1h")
+        Duration retention();
+
+        /**
+         * A file to memory-map the samples to, instead of keeping them on the heap.
+         */
+        Optional<String> file();
+
+        /**
+         * The maximum number of values per node in a HistoryRead response, the rest is returned using a continuation
+         * point. Must be positive.
+         */
+        @WithDefault("10000")
+        int maxValuesPerNode();
+    }
+
+    enum Pacing {
+        /**
+         * Tick every period, divided by the time scale.
+         */
+        SCALED,
+        /**
+         * Tick back to back, as fast as possible.
+         */
+        UNBOUNDED,
+    }
+
+    enum Notifications {
+        /**
+         * Sample each monitored item at its sampling interval.
+         */
+        SAMPLING,
+        /**
+         * Push values to monitored items when they change, see {@link org.omp.opcua.test.server.PushSubscriptionModel}.
+         */
+        PUSH,
+    }
+
+    enum Writes {
+        /**
+         * Apply writes right away, concurrently with the tick.
+         */
+        IMMEDIATE,
+        /**
+         * Queue writes, and apply them at the start of the next tick, see {@link TickScheduler#submit(int, Runnable)}.
+         */
+        BATCHED,
+    }
+
+    enum Engine {
+        /**
+         * One {@link Device1} instance per device.
+         */
+        OBJECT,
+        /**
+         * Device state in primitive columns, see {@link ColumnarDeviceFleet}.
+         */
+        COLUMNAR,
+    }
 }
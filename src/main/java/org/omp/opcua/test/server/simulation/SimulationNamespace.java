@@ -1,11 +1,17 @@
 package org.omp.opcua.test.server.simulation;
 
+import static org.omp.opcua.test.server.simulation.SimulatedDevice.Variable.ACTIVE;
+import static org.omp.opcua.test.server.simulation.SimulatedDevice.Variable.AMBIENT_TEMPERATURE;
+import static org.omp.opcua.test.server.simulation.SimulatedDevice.Variable.AMBIENT_TEMPERATURE_SETPOINT;
+import static org.omp.opcua.test.server.simulation.SimulatedDevice.Variable.POWER_CONSUMPTION;
+import static org.omp.opcua.test.server.simulation.SimulatedDevice.Variable.TEMPERATURE;
+
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -15,83 +21,258 @@ import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
 import org.eclipse.milo.opcua.sdk.server.api.DataItem;
 import org.eclipse.milo.opcua.sdk.server.api.ManagedNamespaceWithLifecycle;
 import org.eclipse.milo.opcua.sdk.server.api.MonitoredItem;
+import org.eclipse.milo.opcua.sdk.server.api.services.AttributeHistoryServices.HistoryReadContext;
+import org.eclipse.milo.opcua.sdk.server.api.services.AttributeServices.ReadContext;
+import org.eclipse.milo.opcua.sdk.server.api.services.AttributeServices.WriteContext;
+import org.eclipse.milo.opcua.sdk.server.api.services.ViewServices.BrowseContext;
 import org.eclipse.milo.opcua.sdk.server.dtd.DataTypeDictionaryManager;
 import org.eclipse.milo.opcua.sdk.server.nodes.UaFolderNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNodeContext;
 import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
 import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilters;
-import org.eclipse.milo.opcua.sdk.server.util.SubscriptionModel;
 import org.eclipse.milo.opcua.stack.core.Identifiers;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
 import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadDetails;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadValueId;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.eclipse.milo.opcua.stack.core.types.structured.ViewDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.WriteValue;
+import org.omp.opcua.test.server.MonitoredNodes;
+import org.omp.opcua.test.server.NamespaceMetrics;
+import org.omp.opcua.test.server.NodePopulator;
+import org.omp.opcua.test.server.PushSubscriptionModel;
+import org.omp.opcua.test.server.RandomSource;
+import org.omp.opcua.test.server.ServiceExecutor;
+import org.omp.opcua.test.server.Shard;
 import org.omp.opcua.test.server.TestNamespace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
 
 public class SimulationNamespace extends ManagedNamespaceWithLifecycle {
+    private static final Logger LOG = LoggerFactory.getLogger(SimulationNamespace.class);
     public static final String NAMESPACE_URI = "urn:omp:milo:simulation-namespace";
     private final SimulationConfiguration configuration;
-    private final SubscriptionModel subscriptionModel;
-    private final List<Runnable> tasks = new ArrayList<>();
-    private final ScheduledExecutorService executor;
-
-    public SimulationNamespace(final OpcUaServer server, final SimulationConfiguration configuration) {
+    private final Shard shard;
+    private final ServiceExecutor executor;
+    private final PushSubscriptionModel subscriptionModel;
+    private final TickScheduler scheduler;
+    private final NamespaceMetrics metrics;
+    private final NodePopulator populator;
+    private final HistoryStore history;
+    private final HistoryReader historyReader;
+    private final MonitoredNodes monitoredNodes;
+    private final ObservedDevices observedDevices;
+
+    public SimulationNamespace(final OpcUaServer server, final SimulationConfiguration configuration, final Shard shard, final ServiceExecutor executor, final MeterRegistry registry) {
         super(server, NAMESPACE_URI);
         this.configuration = configuration;
+        this.shard = shard;
+        this.executor = executor;
+
+        this.subscriptionModel = new PushSubscriptionModel(server, this);
+        this.scheduler = new TickScheduler("simulation", configuration.tick());
+        this.scheduler.bindTo(registry);
+        this.metrics = new NamespaceMetrics(registry, "simulation");
+        this.populator = new NodePopulator("simulation", getNodeContext(), configuration.population());
+
+        if (configuration.history().enabled()) {
+            this.history = new HistoryStore("simulation", configuration.history(), configuration.tick().period());
+            this.history.bindTo(registry);
+            this.historyReader = new HistoryReader(this.history, HistoryRequests.register(server), configuration.history().maxValuesPerNode());
+        } else {
+            this.history = null;
+            this.historyReader = null;
+        }
 
-        this.subscriptionModel = new SubscriptionModel(server, this);
-        this.executor = Executors.newScheduledThreadPool(1);
+        // the history needs every tick of every device
+        if (configuration.tick().onDemand() && this.history == null) {
+            this.observedDevices = new ObservedDevices(configuration.tick().maxCatchUp());
+            this.observedDevices.bindTo(registry);
+        } else {
+            this.observedDevices = null;
+        }
+        this.monitoredNodes = new MonitoredNodes(this::observedChanged);
 
         getLifecycleManager().addLifecycle(this.subscriptionModel);
 
         getLifecycleManager().addStartupTask(this::populateNamespace);
         getLifecycleManager().addShutdownTask(this::stopTicking);
+        if (this.history != null) {
+            getLifecycleManager().addShutdownTask(this.history::close);
+        }
     }
 
     void tick() {
-        for (Runnable r : this.tasks) {
-            r.run();
-        }
+        this.scheduler.tick();
     }
 
     void stopTicking() {
-        this.executor.shutdown();
+        this.scheduler.stop();
     }
 
     private void populateNamespace() {
         var base = createBaseFolder();
-        for (int i = 0; i < this.configuration.numberOfDevices(); i++) {
-            var device = new Device1();
-            registerDevice(base, i, device);
+        var random = RandomSource.root("simulation", this.configuration.seed());
+        var fleets = new ArrayList<Fleet>();
+        // nodes get registered once the ticked fleet is complete, observed devices are tracked by their index in it
+        var registrations = new ArrayList<Runnable>();
+
+        // the index of the first device of the next fleet, in the ticked fleet
+        var offset = 0;
+
+        if (this.configuration.numberOfDevices() > 0) {
+            if (this.configuration.models().containsKey("Device")) {
+                throw new IllegalArgumentException("Model name 'Device' clashes with the default devices");
+            }
+            var first = this.shard.from(this.configuration.numberOfDevices());
+            var fleet = createFleet(random, first, this.shard.to(this.configuration.numberOfDevices()) - first);
+            registrations.add(() -> this.populator.populate("Devices", fleet.size(), (context, from, to) -> {
+                for (int i = from; i < to; i++) {
+                    registerDevice(context, base, first + i, i, fleet.device(i));
+                }
+            }));
+            fleets.add(fleet);
+            offset += fleet.size();
+        }
+
+        for (var entry : this.configuration.models().entrySet()) {
+            var model = DeviceModel.compile(entry.getKey(), entry.getValue(), this.configuration.tick().period());
+            var first = this.shard.from(entry.getValue().numberOfDevices());
+            var size = this.shard.to(entry.getValue().numberOfDevices()) - first;
+            var fleet = new ModelFleet(model, size, first, random.derive(entry.getKey().hashCode()), this.scheduler.getClock());
+            LOG.info("Model '{}': {} devices, {} variables", model.getName(), fleet.size(), model.getVariables().size());
+            var fleetOffset = offset;
+            registrations.add(() -> this.populator.populate(model.getName(), fleet.size(), (context, from, to) -> {
+                for (int i = from; i < to; i++) {
+                    registerModelDevice(context, base, fleet, fleetOffset, first + i, i);
+                }
+            }));
+            fleets.add(fleet);
+            offset += fleet.size();
+        }
+
+        var ticked = fleets.size() == 1 ? fleets.get(0) : new CompositeFleet(fleets);
+        if (this.observedDevices != null) {
+            this.observedDevices.attach(ticked);
+        }
+        registrations.forEach(Runnable::run);
+
+        this.scheduler.start(ticked, this.observedDevices);
+    }
+
+    private DeviceFleet createFleet(final RandomSource random, final int first, final int size) {
+        var deadbands = createDeadbands();
+        switch (this.configuration.engine()) {
+            case COLUMNAR:
+                return new ColumnarDeviceFleet(size, first, random, deadbands, this.scheduler.getClock());
+            case OBJECT:
+            default:
+                return new ObjectDeviceFleet(size, first, random, deadbands, this.scheduler.getClock());
         }
-        this.executor.scheduleAtFixedRate(this::tick, 0, 1, TimeUnit.SECONDS);
     }
 
-    private void registerDevice(UaFolderNode base, int idx, Device1 device) {
+    private Map<SimulatedDevice.Variable, Deadband> createDeadbands() {
+        var result = new EnumMap<SimulatedDevice.Variable, Deadband>(SimulatedDevice.Variable.class);
+        this.configuration.deadbands().forEach((name, configuration) -> {
+            var variable = SimulatedDevice.Variable.byName(name);
+            if (!variable.isSimulated()) {
+                throw new IllegalArgumentException("Deadbands only apply to simulated variables, not: " + name);
+            }
+            var deadband = Deadband.of(configuration);
+            LOG.info("Deadband of '{}': {}", name, deadband);
+            result.put(variable, deadband);
+        });
+        return result;
+    }
 
-        var name = String.format("Device %04d", idx);
+    /**
+     * Register the nodes of a device.
+     *
+     * @param number The number of the device, across all shards.
+     * @param idx The index of the device, in the fleet of this shard.
+     */
+    private void registerDevice(UaNodeContext context, UaFolderNode base, int number, int idx, SimulatedDevice device) {
 
-        var folder = createFolder(base.getNodeId(), "OMP/Simulation/" + name, name, name);
-        var simulation = createFolder(folder.getNodeId(), "OMP/Simulation/" + name + "/Simulation Properties", "Simulation Properties", "Simulation Properties");
-        var physical = createFolder(folder.getNodeId(), "OMP/Simulation/" + name + "/Physical Properties", "Physical Properties", "Physical Properties");
-        var control = createFolder(folder.getNodeId(), "OMP/Simulation/" + name + "/Control", "Control", "Control");
+        var name = NodePopulator.zeroPadded("Device ", number, 4);
 
-        registerVariable(simulation, name, "ambientTemperatureSetpoint", "Ambient Temperature Setpoint", Identifiers.Double, device::getAmbientTemperatureSetpoint, device::setAmbientTemperatureSetpoint);
+        var folder = createFolder(context, base.getNodeId(), "OMP/Simulation/" + name, name, name);
+        var simulation = createFolder(context, folder.getNodeId(), "OMP/Simulation/" + name + "/Simulation Properties", "Simulation Properties", "Simulation Properties");
+        var physical = createFolder(context, folder.getNodeId(), "OMP/Simulation/" + name + "/Physical Properties", "Physical Properties", "Physical Properties");
+        var control = createFolder(context, folder.getNodeId(), "OMP/Simulation/" + name + "/Control", "Control", "Control");
 
-        registerVariable(physical, name, "temperature", "Temperature", Identifiers.Double, device::getTemperature, null);
-        registerVariable(physical, name, "ambientTemperature", "Ambient Temperature", Identifiers.Double, device::getAmbientTemperature, null);
-        registerVariable(physical, name, "powerConsumption", "Power Consumption", Identifiers.Double, device::getPowerConsumption, null);
-        registerVariable(control, name, "active", "Active", Identifiers.Boolean, device::isActive, device::setActive);
+        registerVariable(context, simulation, idx, name, AMBIENT_TEMPERATURE_SETPOINT.getName(), "Ambient Temperature Setpoint", DeviceModel.Type.DOUBLE, device::getAmbientTemperatureSetpoint, writer(idx, device::setAmbientTemperatureSetpoint), listener -> device.setChangeListener(AMBIENT_TEMPERATURE_SETPOINT, listener));
 
-        this.tasks.add(device::tick);
+        registerVariable(context, physical, idx, name, TEMPERATURE.getName(), "Temperature", DeviceModel.Type.DOUBLE, device::getTemperature, null, listener -> device.setChangeListener(TEMPERATURE, listener));
+        registerVariable(context, physical, idx, name, AMBIENT_TEMPERATURE.getName(), "Ambient Temperature", DeviceModel.Type.DOUBLE, device::getAmbientTemperature, null, listener -> device.setChangeListener(AMBIENT_TEMPERATURE, listener));
+        registerVariable(context, physical, idx, name, POWER_CONSUMPTION.getName(), "Power Consumption", DeviceModel.Type.DOUBLE, device::getPowerConsumption, null, listener -> device.setChangeListener(POWER_CONSUMPTION, listener));
+        registerVariable(context, control, idx, name, ACTIVE.getName(), "Active", DeviceModel.Type.BOOLEAN, device::isActive, writer(idx, device::setActive), listener -> device.setChangeListener(ACTIVE, listener));
+    }
+
+    private void registerModelDevice(UaNodeContext context, UaFolderNode base, ModelFleet fleet, int offset, int number, int idx) {
+
+        var model = fleet.getModel();
+        var name = NodePopulator.zeroPadded(model.getName() + " ", number, 4);
+
+        var folder = createFolder(context, base.getNodeId(), "OMP/Simulation/" + name, name, name);
+        var folders = new HashMap<String, UaFolderNode>();
+        for (var folderName : model.getFolders()) {
+            folders.put(folderName, createFolder(context, folder.getNodeId(), "OMP/Simulation/" + name + "/" + folderName, folderName, folderName));
+        }
+
+        for (var variable : model.getVariables()) {
+            var v = variable.getIndex();
+            registerVariable(
+                    context,
+                    variable.getFolder().map(folders::get).orElse(folder),
+                    offset + idx,
+                    name,
+                    variable.getName(),
+                    variable.getLabel(),
+                    variable.getType(),
+                    () -> fleet.getValue(idx, v),
+                    variable.getAccess() == DeviceModel.Access.READ_WRITE ? writer(offset + idx, value -> fleet.setValue(idx, v, value)) : null,
+                    listener -> fleet.setChangeListener(idx, v, listener)
+            );
+        }
+    }
+
+    /**
+     * Wrap the writer of a device variable, to queue writes for the next tick, if writes are batched.
+     *
+     * @param device The index of the device, in the ticked fleet.
+     * @param injector The writer of the variable.
+     * @return The writer to use.
+     */
+    private Consumer<DataValue> writer(final int device, final Consumer<DataValue> injector) {
+        // a device which wasn't observed catches up, before the write applies
+        var observed = this.observedDevices;
+        Consumer<DataValue> write = observed == null ? injector : value -> {
+            observed.catchUp(device);
+            injector.accept(value);
+        };
+
+        if (this.configuration.writes() == SimulationConfiguration.Writes.IMMEDIATE) {
+            return write;
+        }
+        return value -> this.scheduler.submit(device, () -> write.accept(value));
     }
 
     private void registerVariable(
+            UaNodeContext context,
             UaFolderNode folder,
+            int device,
             String deviceName,
             String name,
             String label,
-            NodeId dataType,
+            DeviceModel.Type type,
             Supplier<DataValue> extractor,
-            Consumer<DataValue> injector
+            Consumer<DataValue> injector,
+            Consumer<Runnable> changeListener
     ) {
 
         var accessLevel = EnumSet.of(AccessLevel.CurrentRead);
@@ -99,24 +280,33 @@ public class SimulationNamespace extends ManagedNamespaceWithLifecycle {
         if (injector != null) {
             accessLevel.add(AccessLevel.CurrentWrite);
         }
+        if (this.history != null) {
+            accessLevel.add(AccessLevel.HistoryRead);
+        }
 
-        var node = new UaVariableNode.UaVariableNodeBuilder(getNodeContext())
+        var node = new UaVariableNode.UaVariableNodeBuilder(context)
                 .setNodeId(newNodeId("OMP/Simulation/" + deviceName + "/" + name))
                 .setAccessLevel(accessLevel)
                 .setUserAccessLevel(accessLevel)
+                .setHistorizing(this.history != null)
                 .setBrowseName(newQualifiedName(name))
                 .setDisplayName(LocalizedText.english(label))
-                .setDataType(dataType)
+                .setDataType(type.getDataType())
                 .setTypeDefinition(Identifiers.BaseDataVariableType)
                 .build();
 
         var chain = node.getFilterChain();
 
-        chain.addLast(
-                AttributeFilters.getValue(
-                        ctx -> extractor.get()
-                )
-        );
+        chain.addLast(this.metrics.timing());
+        if (this.observedDevices != null) {
+            chain.addLast(this.observedDevices.new DeviceValue(device, extractor));
+        } else {
+            chain.addLast(
+                    AttributeFilters.getValue(
+                            ctx -> extractor.get()
+                    )
+            );
+        }
 
         if (injector != null) {
             chain.addLast(AttributeFilters.setValue((ctx, value) -> {
@@ -124,7 +314,30 @@ public class SimulationNamespace extends ManagedNamespaceWithLifecycle {
             }));
         }
 
-        getNodeManager().addNode(node);
+        Runnable listener = null;
+
+        if (this.configuration.notifications() == SimulationConfiguration.Notifications.PUSH) {
+            var source = this.subscriptionModel.register(node.getNodeId(), extractor);
+            listener = source::changed;
+        }
+
+        if (this.history != null) {
+            var buffer = this.history.register(node.getNodeId(), type);
+            this.history.record(buffer, extractor.get());
+
+            Runnable record = () -> this.history.record(buffer, extractor.get());
+            var push = listener;
+            listener = push == null ? record : () -> {
+                record.run();
+                push.run();
+            };
+        }
+
+        if (listener != null) {
+            changeListener.accept(listener);
+        }
+
+        context.getNodeManager().addNode(node);
         folder.addOrganizes(node);
     }
 
@@ -135,10 +348,11 @@ public class SimulationNamespace extends ManagedNamespaceWithLifecycle {
         }
         NodeId parentNodeId = new NodeId(index, "OMP");
 
-        return createFolder(parentNodeId, "OMP/Simulation", "Simulation", "Simulation");
+        return createFolder(getNodeContext(), parentNodeId, "OMP/Simulation", "Simulation", "Simulation");
     }
 
     private UaFolderNode createFolder(
+            UaNodeContext context,
             NodeId parentNodeId,
             String nodeId,
             String name,
@@ -146,12 +360,12 @@ public class SimulationNamespace extends ManagedNamespaceWithLifecycle {
     ) {
         NodeId folderNodeId = newNodeId(nodeId);
         UaFolderNode folderNode = new UaFolderNode(
-                getNodeContext(),
+                context,
                 folderNodeId,
                 newQualifiedName(name),
                 LocalizedText.english(label)
         );
-        getNodeManager().addNode(folderNode);
+        context.getNodeManager().addNode(folderNode);
 
         folderNode.addReference(new Reference(
                 folderNode.getNodeId(),
@@ -163,8 +377,54 @@ public class SimulationNamespace extends ManagedNamespaceWithLifecycle {
         return folderNode;
     }
 
+    @Override
+    public void read(final ReadContext context, final Double maxAge, final TimestampsToReturn timestamps, final List<ReadValueId> readValueIds) {
+        this.executor.execute(context, () -> super.read(context, maxAge, timestamps, readValueIds));
+    }
+
+    @Override
+    public void write(final WriteContext context, final List<WriteValue> writeValues) {
+        this.executor.execute(context, () -> super.write(context, writeValues));
+    }
+
+    @Override
+    public void browse(final BrowseContext context, final ViewDescription view, final NodeId nodeId) {
+        this.executor.execute(context, () -> super.browse(context, view, nodeId));
+    }
+
+    @Override
+    public void getReferences(final BrowseContext context, final ViewDescription view, final NodeId nodeId) {
+        this.executor.execute(context, () -> super.getReferences(context, view, nodeId));
+    }
+
+    @Override
+    public void historyRead(final HistoryReadContext context, final HistoryReadDetails readDetails, final TimestampsToReturn timestamps, final List<HistoryReadValueId> readValueIds) {
+        if (this.historyReader == null) {
+            super.historyRead(context, readDetails, timestamps, readValueIds);
+            return;
+        }
+        this.historyReader.read(context, readDetails, timestamps, readValueIds);
+    }
+
+    private void observedChanged(final NodeId nodeId, final boolean observed) {
+        if (this.observedDevices == null) {
+            return;
+        }
+        var device = getNodeManager().getNode(nodeId).map(ObservedDevices::deviceOf).orElse(-1);
+        if (device < 0) {
+            return;
+        }
+        if (observed) {
+            // before the initial value gets pushed, reads of observed devices don't catch up
+            this.observedDevices.catchUp(device);
+        }
+        this.observedDevices.setObserved(device, observed);
+    }
+
     @Override
     public void onDataItemsCreated(final List<DataItem> dataItems) {
+        this.metrics.dataItemsCreated(dataItems);
+        this.monitoredNodes.onDataItemsCreated(dataItems);
         this.subscriptionModel.onDataItemsCreated(dataItems);
     }
 
@@ -175,11 +435,14 @@ public class SimulationNamespace extends ManagedNamespaceWithLifecycle {
 
     @Override
     public void onDataItemsDeleted(final List<DataItem> dataItems) {
+        this.metrics.dataItemsDeleted(dataItems);
+        this.monitoredNodes.onDataItemsDeleted(dataItems);
         this.subscriptionModel.onDataItemsDeleted(dataItems);
     }
 
     @Override
     public void onMonitoringModeChanged(final List<MonitoredItem> monitoredItems) {
+        this.monitoredNodes.onMonitoringModeChanged(monitoredItems);
         this.subscriptionModel.onMonitoringModeChanged(monitoredItems);
     }
 }
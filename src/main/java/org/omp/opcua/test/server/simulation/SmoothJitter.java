@@ -1,16 +1,16 @@
 package org.omp.opcua.test.server.simulation;
 
-import java.util.Random;
+import org.omp.opcua.test.server.RandomSource;
 
 public class SmoothJitter {
     final double[] data;
-    final Random r;
+    final RandomSource r;
     final double bandwidth;
 
     int idx;
     double sum;
 
-    public SmoothJitter(Random r, int values, double bandwidth) {
+    public SmoothJitter(RandomSource r, int values, double bandwidth) {
         this.data = new double[values];
         this.bandwidth = bandwidth;
         for (int i = 0; i < values; i++) {
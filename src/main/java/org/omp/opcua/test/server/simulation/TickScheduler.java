@@ -0,0 +1,353 @@
+package org.omp.opcua.test.server.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Ticks a {@link Fleet} periodically, splitting the fleet into contiguous shards which get ticked in parallel.
+ * <p>
+ * Each tick advances the {@link #getClock() simulation clock} by one period. Ticks run every period divided by the
+ * time scale, or back to back, and may run a number of ticks right away at startup, to simulate the past.
+ * <p>
+ * Client writes can be {@link #submit(int, Runnable) submitted} to the shard of their device. Each shard applies its
+ * pending writes at the start of its next tick, on the thread ticking it, so writes never race with the tick, and
+ * always take effect at the same point of the simulation.
+ * <p>
+ * With {@link ObservedDevices}, only the observed devices of the shards get ticked.
+ */
+public class TickScheduler implements MeterBinder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TickScheduler.class);
+
+    private final String name;
+    private final long periodNanos;
+    private final long wallPeriodNanos;
+    private final SimulationConfiguration.Pacing pacing;
+    private final int fastForward;
+    private final ScaledClock clock;
+    private final int parallelism;
+    private final int minShardSize;
+
+    private final ScheduledExecutorService timer;
+    private final ForkJoinPool pool;
+
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private volatile long lastTickNanos;
+    private boolean overrunning;
+    private volatile Timer tickTimer;
+
+    private volatile Fleet fleet;
+    private volatile ObservedDevices observed;
+    private volatile List<Shard> shards = List.of();
+    /**
+     * The first device of each shard, to find the shard of a write.
+     */
+    private volatile int[] shardStarts = new int[0];
+
+    private final class Shard implements Callable<Void> {
+        private final Fleet fleet;
+        private final int from;
+        private final int to;
+        private final MpscQueue<Runnable> writes = new MpscQueue<>();
+
+        Shard(final Fleet fleet, final int from, final int to) {
+            this.fleet = fleet;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Void call() {
+            var applied = this.writes.drain(write -> {
+                try {
+                    write.run();
+                } catch (Exception e) {
+                    LOG.warn("Failed to apply write to '{}'", TickScheduler.this.name, e);
+                }
+            });
+            if (applied > 0) {
+                TickScheduler.this.writes.addAndGet(applied);
+            }
+
+            var observed = TickScheduler.this.observed;
+            if (observed != null) {
+                observed.tick(this.from, this.to);
+            } else {
+                this.fleet.tick(this.from, this.to);
+            }
+            return null;
+        }
+    }
+
+    public TickScheduler(final String name, final SimulationConfiguration.Tick configuration) {
+        this.name = name;
+        this.periodNanos = configuration.period().toNanos();
+        if (!(configuration.timeScale() > 0)) {
+            throw new IllegalArgumentException("Time scale must be positive: " + configuration.timeScale());
+        }
+        this.wallPeriodNanos = Math.max(1, Math.round(this.periodNanos / configuration.timeScale()));
+        this.pacing = configuration.pacing();
+        this.fastForward = Math.max(0, configuration.fastForward());
+
+        var timeScale = this.pacing == SimulationConfiguration.Pacing.UNBOUNDED ? 0 : configuration.timeScale();
+        // anchored again when ticking starts
+        this.clock = new ScaledClock(fastForwardStart(), configuration.period(), timeScale);
+        this.parallelism = Math.max(1, configuration.parallelism().orElse(Runtime.getRuntime().availableProcessors()));
+        this.minShardSize = Math.max(1, configuration.minShardSize());
+
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, name + "-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        var workers = new AtomicInteger();
+        this.pool = new ForkJoinPool(this.parallelism, pool -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(name + "-tick-worker-" + workers.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Start ticking the fleet.
+     *
+     * @param fleet The fleet to tick.
+     */
+    public void start(final Fleet fleet) {
+        start(fleet, null);
+    }
+
+    /**
+     * Start ticking the fleet, fast-forwarding all devices, but then only ticking observed devices.
+     *
+     * @param fleet The fleet to tick.
+     * @param observed The observed devices of the fleet, or {@code null} to always tick all devices.
+     */
+    void start(final Fleet fleet, final ObservedDevices observed) {
+        attach(fleet);
+
+        // populating may take a while, anchor the clock once ticking starts
+        this.clock.reset(fastForwardStart());
+        if (this.fastForward > 0) {
+            LOG.info("Fast-forwarding '{}' by {} ticks", this.name, this.fastForward);
+            var start = System.nanoTime();
+            for (int i = 0; i < this.fastForward; i++) {
+                tick();
+            }
+            LOG.info("Fast-forwarded '{}' in {} ms", this.name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        this.observed = observed;
+
+        switch (this.pacing) {
+            case UNBOUNDED:
+                LOG.info("Ticking {} devices of '{}' in {} shard(s), as fast as possible", fleet.size(), this.name, this.shards.size());
+                this.timer.execute(() -> {
+                    while (!this.timer.isShutdown()) {
+                        tick();
+                    }
+                });
+                break;
+            case SCALED:
+            default:
+                LOG.info("Ticking {} devices of '{}' in {} shard(s), every {} ms", fleet.size(), this.name, this.shards.size(), TimeUnit.NANOSECONDS.toMillis(this.wallPeriodNanos));
+                this.timer.scheduleAtFixedRate(this::tick, 0, this.wallPeriodNanos, TimeUnit.NANOSECONDS);
+                break;
+        }
+    }
+
+    /**
+     * The time the fast-forward has to start at, so that the first tick after it, which runs right away, is at the
+     * current time.
+     */
+    private long fastForwardStart() {
+        return SimulationClock.WALL.now() - (this.fastForward + 1L) * (this.periodNanos / 100);
+    }
+
+    /**
+     * The clock of the simulation, for the timestamps of simulated values.
+     */
+    public SimulationClock getClock() {
+        return this.clock;
+    }
+
+    /**
+     * Attach a fleet, without starting to tick it.
+     *
+     * @param fleet The fleet to tick.
+     */
+    void attach(final Fleet fleet) {
+        var shards = createShards(fleet);
+        var starts = new int[shards.size()];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = shards.get(i).from;
+        }
+
+        this.shards = shards;
+        this.shardStarts = starts;
+        this.fleet = fleet;
+    }
+
+    /**
+     * Submit a write, to be applied at the start of the next tick. Writes get applied in the order they got submitted,
+     * per shard. Writes submitted before a fleet got attached get applied right away.
+     *
+     * @param device The index of the device the write is for.
+     * @param write The write.
+     */
+    public void submit(final int device, final Runnable write) {
+        var shards = this.shards;
+        if (shards.isEmpty()) {
+            write.run();
+            return;
+        }
+
+        var index = Arrays.binarySearch(this.shardStarts, device);
+        // not a start of a shard: -(insertion point) - 1, the shard is the one before the insertion point
+        var shard = index >= 0 ? index : Math.max(0, -index - 2);
+        shards.get(shard).writes.offer(write);
+    }
+
+    public void stop() {
+        this.timer.shutdown();
+        this.pool.shutdown();
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        var tags = Tags.of("scheduler", this.name);
+
+        this.tickTimer = Timer.builder("omp.simulation.tick")
+                .tags(tags)
+                .description("Duration of a full tick of the fleet")
+                .publishPercentileHistogram()
+                .register(registry);
+
+        FunctionCounter.builder("omp.simulation.tick.overruns", this.overruns, AtomicLong::get)
+                .tags(tags)
+                .description("Ticks which took longer than the tick period")
+                .register(registry);
+
+        FunctionCounter.builder("omp.simulation.writes", this.writes, AtomicLong::get)
+                .tags(tags)
+                .description("Client writes applied at the start of a tick")
+                .register(registry);
+    }
+
+    private List<Shard> createShards(final Fleet fleet) {
+        var size = fleet.size();
+        var count = Math.max(1, Math.min(this.parallelism, size / this.minShardSize));
+
+        var result = new ArrayList<Shard>(count);
+        for (int i = 0; i < count; i++) {
+            // spread the remainder over the first shards
+            var from = (int) ((long) size * i / count);
+            var to = (int) ((long) size * (i + 1) / count);
+            result.add(new Shard(fleet, from, to));
+        }
+        return result;
+    }
+
+    /**
+     * Run a single tick, synchronously.
+     */
+    void tick() {
+        if (this.fleet == null) {
+            return;
+        }
+
+        var start = System.nanoTime();
+        this.clock.advance();
+        try {
+            runShards();
+            var observed = this.observed;
+            if (observed != null) {
+                observed.completed();
+            }
+        } catch (Exception e) {
+            // never let an exception escape, it would cancel the schedule
+            LOG.warn("Failed to tick '{}'", this.name, e);
+        } finally {
+            this.clock.settle();
+        }
+        var duration = System.nanoTime() - start;
+
+        this.lastTickNanos = duration;
+        this.ticks.incrementAndGet();
+
+        var tickTimer = this.tickTimer;
+        if (tickTimer != null) {
+            tickTimer.record(duration, TimeUnit.NANOSECONDS);
+        }
+
+        if (this.pacing == SimulationConfiguration.Pacing.UNBOUNDED) {
+            return;
+        }
+
+        if (duration > this.wallPeriodNanos) {
+            this.overruns.incrementAndGet();
+            if (!this.overrunning) {
+                this.overrunning = true;
+                LOG.warn("Tick of '{}' overran its period: {} ms > {} ms", this.name, TimeUnit.NANOSECONDS.toMillis(duration), TimeUnit.NANOSECONDS.toMillis(this.wallPeriodNanos));
+            }
+        } else if (this.overrunning) {
+            this.overrunning = false;
+            LOG.info("Tick of '{}' is back within its period, {} overrun(s) so far", this.name, this.overruns.get());
+        }
+    }
+
+    private void runShards() throws Exception {
+        var shards = this.shards;
+
+        if (shards.size() == 1) {
+            shards.get(0).call();
+            return;
+        }
+
+        for (Future<Void> result : this.pool.invokeAll(shards)) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                LOG.warn("Failed to tick shard of '{}'", this.name, e.getCause());
+            }
+        }
+    }
+
+    public long getTicks() {
+        return this.ticks.get();
+    }
+
+    public long getOverruns() {
+        return this.overruns.get();
+    }
+
+    public long getLastTickNanos() {
+        return this.lastTickNanos;
+    }
+
+    public long getPeriodNanos() {
+        return this.periodNanos;
+    }
+}
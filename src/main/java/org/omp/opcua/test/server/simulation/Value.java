@@ -1,33 +1,112 @@
 package org.omp.opcua.test.server.simulation;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.BiPredicate;
+
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
 import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
 
+/**
+ * A simulated value.
+ * <p>
+ * The value, its timestamp and the data value built from both, are kept in an immutable snapshot, behind a single
+ * volatile reference. Readers never lock and always see a consistent value/timestamp pair. Writers replace the
+ * snapshot using a compare-and-set.
+ * <p>
+ * Setting a value which doesn't count as a change, e.g. because it is equal or within a {@link Deadband}, keeps the
+ * current value and timestamp.
+ *
+ * @param <T> The value type.
+ */
 public class Value<T> {
-    private T value;
-    private DateTime timestamp;
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(Value.class, "state", State.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final class State<T> {
+        private final T value;
+        private final DataValue dataValue;
+
+        State(T value, DateTime timestamp) {
+            this.value = value;
+            this.dataValue = new DataValue.Builder()
+                    .setValue(new Variant(value))
+                    .setSourceTime(timestamp)
+                    .build();
+        }
+    }
+
+    private volatile State<T> state;
+    private volatile Runnable listener;
+    private final BiPredicate<T, T> isChange;
+    private final SimulationClock clock;
 
     public Value(T value)  {
-        this.value = value;
-        this.timestamp = DateTime.now();
+        this(value, SimulationClock.WALL);
+    }
+
+    public Value(T value, SimulationClock clock) {
+        this(value, (current, next) -> !current.equals(next), clock);
+    }
+
+    public Value(T value, BiPredicate<T, T> isChange) {
+        this(value, isChange, SimulationClock.WALL);
+    }
+
+    /**
+     * Create a new value.
+     *
+     * @param value The initial value.
+     * @param isChange Tests if a new value (second argument) counts as a change of the current value (first argument).
+     * @param clock The clock for the timestamps.
+     */
+    public Value(T value, BiPredicate<T, T> isChange, SimulationClock clock) {
+        this.clock = clock;
+        this.state = new State<>(value, clock.nowDateTime());
+        this.isChange = isChange;
     }
 
     public T getValue() {
-        return value;
+        return this.state.value;
     }
 
     public DataValue asDataValue() {
-        return new DataValue.Builder()
-                .setValue(new Variant(this.value))
-                .setSourceTime(this.timestamp)
-                .build();
+        return this.state.dataValue;
+    }
+
+    /**
+     * Set a listener, which gets called when the value changed.
+     *
+     * @param listener The listener, may be {@code null}.
+     */
+    public void setListener(Runnable listener) {
+        this.listener = listener;
     }
 
     public void setValue(T value) {
-        if ( !this.value.equals(value)) {
-            this.value = value;
-            this.timestamp = DateTime.now();
+        State<T> current;
+        State<T> next;
+
+        do {
+            current = this.state;
+            if (!this.isChange.test(current.value, value)) {
+                return;
+            }
+            next = new State<>(value, this.clock.nowDateTime());
+        } while (!STATE.compareAndSet(this, current, next));
+
+        var listener = this.listener;
+        if (listener != null) {
+            listener.run();
         }
     }
 }
@@ -0,0 +1,302 @@
+package org.omp.opcua.test.server.storm;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.omp.opcua.test.server.PushSubscriptionModel;
+import org.omp.opcua.test.server.RandomSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * The items of a storm profile, changing in bursts.
+ * <p>
+ * Each burst changes the next items in a round-robin fashion, so that all items change at the same rate. The burst
+ * size is derived from the requested rate. A fractional burst size carries over to the next burst, so that the
+ * requested rate is met on average.
+ * <p>
+ * Scalar values are a per item change counter, so clients can detect lost notifications. Other payloads rotate
+ * through a few pre-generated values, so that generating payloads doesn't limit the rate.
+ */
+class Storm implements MeterBinder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Storm.class);
+
+    private static final int PAYLOADS = 16;
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String name;
+    private final StormConfiguration.Profile profile;
+    private final int items;
+    private final double requestedRate;
+    private final double burstSize;
+    private final long periodNanos;
+
+    private final AtomicReferenceArray<DataValue> values;
+    private final long[] counters;
+    private final Object[] payloads;
+    private final PushSubscriptionModel.Source[] sources;
+
+    private int cursor;
+    private double carry;
+
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicLong notifications = new AtomicLong();
+    private long windowStart;
+    private long windowChanges;
+    private volatile double achievedRate;
+
+    private Timer burstTimer;
+    private Timer lagTimer;
+
+    Storm(final String name, final StormConfiguration.Profile profile, final RandomSource random) {
+        this.name = name;
+        this.profile = profile;
+        this.items = Math.max(0, profile.numberOfItems());
+        this.periodNanos = profile.burstPeriod().toNanos();
+        if (this.periodNanos <= 0) {
+            throw new IllegalArgumentException("Burst period of storm '" + name + "' must be positive");
+        }
+
+        var burstSize = Math.max(0, profile.rate().isPresent()
+                ? profile.rate().getAsDouble() * this.periodNanos / TimeUnit.SECONDS.toNanos(1)
+                : profile.fraction() * this.items);
+        this.requestedRate = burstSize * TimeUnit.SECONDS.toNanos(1) / this.periodNanos;
+        // every item changes at most once per burst
+        this.burstSize = Math.min(burstSize, this.items);
+        if (this.burstSize < burstSize) {
+            LOG.warn("Storm '{}': requested {} changes/s, but {} items only allow {} changes/s with bursts every {} ms, add items or shorten the burst period",
+                    name, this.requestedRate, this.items, getTargetRate(), profile.burstPeriod().toMillis());
+        }
+
+        this.payloads = createPayloads(profile, random);
+        this.counters = new long[this.items];
+        this.values = new AtomicReferenceArray<>(this.items);
+        this.sources = new PushSubscriptionModel.Source[this.items];
+
+        var now = DateTime.now();
+        for (int i = 0; i < this.items; i++) {
+            this.values.set(i, nextValue(i, now));
+        }
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    int getItems() {
+        return this.items;
+    }
+
+    long getPeriodNanos() {
+        return this.periodNanos;
+    }
+
+    StormConfiguration.Profile getProfile() {
+        return this.profile;
+    }
+
+    /**
+     * The requested rate, in changes per second, as configured.
+     */
+    double getRequestedRate() {
+        return this.requestedRate;
+    }
+
+    /**
+     * The rate the bursts aim for, in changes per second. Lower than requested if the requested rate exceeds one
+     * change per item and burst.
+     */
+    double getTargetRate() {
+        return this.burstSize * TimeUnit.SECONDS.toNanos(1) / this.periodNanos;
+    }
+
+    DataValue getValue(final int item) {
+        return this.values.get(item);
+    }
+
+    void setSource(final int item, final PushSubscriptionModel.Source source) {
+        this.sources[item] = source;
+    }
+
+    /**
+     * Run a burst. Must only be called by the timer wheel.
+     *
+     * @param scheduledNanos When the burst should have run.
+     */
+    void burst(final long scheduledNanos) {
+        var start = System.nanoTime();
+
+        this.carry += this.burstSize;
+        var count = (int) Math.min(this.carry, this.items);
+        this.carry -= count;
+
+        var now = DateTime.now();
+        long notified = 0;
+        for (int n = 0; n < count; n++) {
+            var i = this.cursor;
+            this.cursor = i + 1 < this.items ? i + 1 : 0;
+
+            this.values.set(i, nextValue(i, now));
+            var source = this.sources[i];
+            if (source != null) {
+                notified += source.changed();
+            }
+        }
+
+        this.changes.addAndGet(count);
+        this.notifications.addAndGet(notified);
+
+        var end = System.nanoTime();
+        updateAchievedRate(count, end);
+
+        var burstTimer = this.burstTimer;
+        if (burstTimer != null) {
+            burstTimer.record(end - start, TimeUnit.NANOSECONDS);
+            this.lagTimer.record(Math.max(0, start - scheduledNanos), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void updateAchievedRate(final int count, final long now) {
+        if (this.windowStart == 0) {
+            this.windowStart = now;
+        }
+        this.windowChanges += count;
+
+        var elapsed = now - this.windowStart;
+        if (elapsed >= WINDOW_NANOS) {
+            this.achievedRate = this.windowChanges * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+            this.windowStart = now;
+            this.windowChanges = 0;
+        }
+    }
+
+    private DataValue nextValue(final int item, final DateTime now) {
+        var counter = this.counters[item]++;
+
+        Object value;
+        if (this.payloads == null) {
+            value = this.profile.payloadType() == StormConfiguration.PayloadType.INT64 ? (Object) counter : (Object) (double) counter;
+        } else {
+            // consecutive values of an item always differ
+            value = this.payloads[(int) ((item + counter) % PAYLOADS)];
+        }
+
+        return new DataValue(new Variant(value), StatusCode.GOOD, now, now);
+    }
+
+    /**
+     * Create the payloads to rotate through, or {@code null} if the payload is a change counter.
+     */
+    private static Object[] createPayloads(final StormConfiguration.Profile profile, final RandomSource random) {
+        var size = Math.max(0, profile.payloadSize());
+        var type = profile.payloadType();
+
+        if (size == 0 && (type == StormConfiguration.PayloadType.DOUBLE || type == StormConfiguration.PayloadType.INT64)) {
+            return null;
+        }
+
+        var result = new Object[PAYLOADS];
+        for (int p = 0; p < PAYLOADS; p++) {
+            switch (type) {
+                case DOUBLE: {
+                    var value = new double[size];
+                    for (int i = 0; i < size; i++) {
+                        value[i] = random.nextDouble();
+                    }
+                    result[p] = value;
+                    break;
+                }
+                case INT64: {
+                    var value = new long[size];
+                    for (int i = 0; i < size; i++) {
+                        value[i] = random.nextLong();
+                    }
+                    result[p] = value;
+                    break;
+                }
+                case STRING: {
+                    var value = new char[size];
+                    for (int i = 0; i < size; i++) {
+                        value[i] = (char) ('a' + (int) (random.nextDouble() * 26));
+                    }
+                    // make sure payloads differ, even for short strings
+                    if (size > 0) {
+                        value[0] = (char) ('a' + p);
+                    }
+                    result[p] = new String(value);
+                    break;
+                }
+                case BYTE_STRING:
+                default: {
+                    var value = new byte[size];
+                    for (int i = 0; i < size; i++) {
+                        value[i] = (byte) random.nextLong();
+                    }
+                    if (size > 0) {
+                        value[0] = (byte) p;
+                    }
+                    result[p] = ByteString.of(value);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        var tags = Tags.of("storm", this.name);
+
+        Gauge.builder("omp.storm.rate.requested", this, Storm::getRequestedRate)
+                .tags(tags)
+                .description("Requested value changes per second")
+                .register(registry);
+
+        Gauge.builder("omp.storm.rate.target", this, Storm::getTargetRate)
+                .tags(tags)
+                .description("Value changes per second the bursts aim for")
+                .register(registry);
+
+        Gauge.builder("omp.storm.rate.achieved", this, s -> s.achievedRate)
+                .tags(tags)
+                .description("Value changes per second, over the last second")
+                .register(registry);
+
+        FunctionCounter.builder("omp.storm.changes", this.changes, AtomicLong::get)
+                .tags(tags)
+                .description("Value changes")
+                .register(registry);
+
+        FunctionCounter.builder("omp.storm.notifications", this.notifications, AtomicLong::get)
+                .tags(tags)
+                .description("Value changes handed to monitored items")
+                .register(registry);
+
+        this.lagTimer = Timer.builder("omp.storm.burst.lag")
+                .tags(tags)
+                .description("Delay of bursts, compared to their schedule")
+                .publishPercentileHistogram()
+                .register(registry);
+
+        this.burstTimer = Timer.builder("omp.storm.burst")
+                .tags(tags)
+                .description("Duration of a burst")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -0,0 +1,77 @@
+package org.omp.opcua.test.server.storm;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+
+import org.omp.opcua.test.server.PopulationConfiguration;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+@ConfigMapping(prefix = "omp.opcua.milo.storm",  namingStrategy = ConfigMapping.NamingStrategy.VERBATIM)
+public interface StormConfiguration {
+
+    /**
+     * The tick of the timer wheel, bursts get scheduled at this resolution.
+     */
+    @WithDefault("0.01s")
+    Duration resolution();
+
+    /**
+     * A fixed seed for the payloads, to make runs reproducible.
+     */
+    OptionalLong seed();
+
+    /**
+     * Storms by name, each one gets its own folder {@code OMP/Storm/<name>}. No storms, no load.
+     */
+    Map<String, Profile> profiles();
+
+    PopulationConfiguration population();
+
+    interface Profile {
+        int numberOfItems();
+
+        /**
+         * Value changes per second, over all items. Overrides the {@link #fraction()}.
+         */
+        OptionalDouble rate();
+
+        /**
+         * The fraction of items changing in each burst, if no rate is set.
+         */
+        @WithDefault("1.0")
+        double fraction();
+
+        /**
+         * The period between two bursts.
+         */
+        @WithDefault("0.1s")
+        Duration burstPeriod();
+
+        @WithDefault("double")
+        PayloadType payloadType();
+
+        /**
+         * The number of elements of numeric payloads, zero for scalars. The length of string and byte string
+         * payloads.
+         */
+        @WithDefault("0")
+        int payloadSize();
+    }
+
+    enum PayloadType {
+        /**
+         * A change counter, or an array of random values.
+         */
+        DOUBLE,
+        /**
+         * A change counter, or an array of random values.
+         */
+        INT64,
+        STRING,
+        BYTE_STRING,
+    }
+}
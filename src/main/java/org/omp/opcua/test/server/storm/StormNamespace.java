@@ -0,0 +1,198 @@
+package org.omp.opcua.test.server.storm;
+
+import java.util.List;
+
+import org.eclipse.milo.opcua.sdk.core.AccessLevel;
+import org.eclipse.milo.opcua.sdk.core.Reference;
+import org.eclipse.milo.opcua.sdk.core.ValueRanks;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.api.DataItem;
+import org.eclipse.milo.opcua.sdk.server.api.ManagedNamespaceWithLifecycle;
+import org.eclipse.milo.opcua.sdk.server.api.MonitoredItem;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaFolderNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNodeContext;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilters;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.omp.opcua.test.server.NamespaceMetrics;
+import org.omp.opcua.test.server.NodePopulator;
+import org.omp.opcua.test.server.PushSubscriptionModel;
+import org.omp.opcua.test.server.RandomSource;
+import org.omp.opcua.test.server.TestNamespace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * A namespace generating notification storms: items changing in bursts, at a configured rate.
+ * <p>
+ * All storms share a single {@link TimerWheel}, and push their changes to the monitored items, so the load is
+ * predictable and doesn't depend on sampling intervals.
+ */
+public class StormNamespace extends ManagedNamespaceWithLifecycle {
+    private static final Logger LOG = LoggerFactory.getLogger(StormNamespace.class);
+    public static final String NAMESPACE_URI = "urn:omp:milo:storm-namespace";
+
+    private static final int WHEEL_SIZE = 512;
+
+    private final StormConfiguration configuration;
+    private final MeterRegistry registry;
+    private final PushSubscriptionModel subscriptionModel;
+    private final NamespaceMetrics metrics;
+    private final NodePopulator populator;
+    private final TimerWheel wheel;
+
+    public StormNamespace(final OpcUaServer server, final StormConfiguration configuration, final MeterRegistry registry) {
+        super(server, NAMESPACE_URI);
+        this.configuration = configuration;
+        this.registry = registry;
+
+        this.subscriptionModel = new PushSubscriptionModel(server, this);
+        this.metrics = new NamespaceMetrics(registry, "storm");
+        this.populator = new NodePopulator("storm", getNodeContext(), configuration.population());
+        this.wheel = new TimerWheel("storm", configuration.resolution().toNanos(), WHEEL_SIZE);
+
+        getLifecycleManager().addLifecycle(this.subscriptionModel);
+
+        getLifecycleManager().addStartupTask(this::populateNamespace);
+        getLifecycleManager().addShutdownTask(this.wheel::stop);
+    }
+
+    private void populateNamespace() {
+        if (this.configuration.profiles().isEmpty()) {
+            return;
+        }
+
+        var base = createFolder(getNodeContext(), getTestRoot(), "OMP/Storm", "Storm");
+        var random = RandomSource.root("storm", this.configuration.seed());
+
+        for (var entry : this.configuration.profiles().entrySet()) {
+            var storm = new Storm(entry.getKey(), entry.getValue(), random.derive(entry.getKey().hashCode()));
+            populateStorm(base, storm);
+            storm.bindTo(this.registry);
+
+            LOG.info("Storm '{}': {} items, {} changes/s, in bursts every {} ms", storm.getName(), storm.getItems(),
+                    storm.getRequestedRate(), storm.getProfile().burstPeriod().toMillis());
+
+            this.wheel.schedule(storm.getPeriodNanos(), storm::burst);
+        }
+
+        this.wheel.start();
+    }
+
+    private void populateStorm(final UaFolderNode base, final Storm storm) {
+        var path = "OMP/Storm/" + storm.getName();
+        var folder = createFolder(getNodeContext(), base.getNodeId(), path, storm.getName());
+
+        this.populator.populate(storm.getName(), storm.getItems(), (context, from, to) -> {
+            for (int i = from; i < to; i++) {
+                var node = createItem(context, path, storm, i);
+                context.getNodeManager().addNode(node);
+                // add the reference through the item, which batches it, and adds the forward reference too
+                node.addReference(new Reference(
+                        node.getNodeId(),
+                        Identifiers.Organizes,
+                        folder.getNodeId().expanded(),
+                        false
+                ));
+            }
+        });
+    }
+
+    private UaVariableNode createItem(final UaNodeContext context, final String path, final Storm storm, final int item) {
+        var name = NodePopulator.zeroPadded("Item", item, 6);
+        var profile = storm.getProfile();
+        var array = profile.payloadSize() > 0
+                && (profile.payloadType() == StormConfiguration.PayloadType.DOUBLE || profile.payloadType() == StormConfiguration.PayloadType.INT64);
+
+        var node = new UaVariableNode.UaVariableNodeBuilder(context)
+                .setNodeId(newNodeId(path + "/" + name))
+                .setAccessLevel(AccessLevel.READ_ONLY)
+                .setUserAccessLevel(AccessLevel.READ_ONLY)
+                .setBrowseName(newQualifiedName(name))
+                .setDisplayName(LocalizedText.english(name))
+                .setDataType(dataType(profile.payloadType()))
+                .setValueRank(array ? ValueRanks.OneDimension : ValueRanks.Scalar)
+                .setArrayDimensions(array ? new UInteger[]{UInteger.valueOf(profile.payloadSize())} : null)
+                .setTypeDefinition(Identifiers.BaseDataVariableType)
+                .build();
+
+        node.getFilterChain().addLast(
+                this.metrics.timing(),
+                AttributeFilters.getValue(
+                        ctx -> storm.getValue(item)
+                )
+        );
+
+        storm.setSource(item, this.subscriptionModel.register(node.getNodeId(), () -> storm.getValue(item)));
+
+        return node;
+    }
+
+    private static NodeId dataType(final StormConfiguration.PayloadType type) {
+        switch (type) {
+            case INT64:
+                return Identifiers.Int64;
+            case STRING:
+                return Identifiers.String;
+            case BYTE_STRING:
+                return Identifiers.ByteString;
+            case DOUBLE:
+            default:
+                return Identifiers.Double;
+        }
+    }
+
+    private NodeId getTestRoot() {
+        var index = getServer().getNamespaceTable().getIndex(TestNamespace.NAMESPACE_URI);
+        if (index == null) {
+            throw new RuntimeException("Missing namespace: " + TestNamespace.NAMESPACE_URI);
+        }
+        return new NodeId(index, "OMP");
+    }
+
+    private UaFolderNode createFolder(final UaNodeContext context, final NodeId parentNodeId, final String nodeId, final String name) {
+        var folderNode = new UaFolderNode(
+                context,
+                newNodeId(nodeId),
+                newQualifiedName(name),
+                LocalizedText.english(name)
+        );
+        context.getNodeManager().addNode(folderNode);
+
+        folderNode.addReference(new Reference(
+                folderNode.getNodeId(),
+                Identifiers.Organizes,
+                parentNodeId.expanded(),
+                false
+        ));
+
+        return folderNode;
+    }
+
+    @Override
+    public void onDataItemsCreated(final List<DataItem> dataItems) {
+        this.metrics.dataItemsCreated(dataItems);
+        this.subscriptionModel.onDataItemsCreated(dataItems);
+    }
+
+    @Override
+    public void onDataItemsModified(final List<DataItem> dataItems) {
+        this.subscriptionModel.onDataItemsModified(dataItems);
+    }
+
+    @Override
+    public void onDataItemsDeleted(final List<DataItem> dataItems) {
+        this.metrics.dataItemsDeleted(dataItems);
+        this.subscriptionModel.onDataItemsDeleted(dataItems);
+    }
+
+    @Override
+    public void onMonitoringModeChanged(final List<MonitoredItem> monitoredItems) {
+        this.subscriptionModel.onMonitoringModeChanged(monitoredItems);
+    }
+}
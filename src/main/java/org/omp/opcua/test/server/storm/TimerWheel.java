@@ -0,0 +1,164 @@
+package org.omp.opcua.test.server.storm;
+
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A hashed timer wheel, running periodic timers on a single thread.
+ * <p>
+ * Timers get hashed into the slots of the wheel by the tick of their next deadline. Each tick only visits the timers
+ * of one slot, so scheduling and firing a timer is constant time, no matter how many timers there are. Deadlines are
+ * kept in nanoseconds, so periods which aren't a multiple of the tick don't drift.
+ * <p>
+ * A thread falling behind processes the missed ticks back to back, timers get told when they should have fired. A
+ * timer more than one period behind skips the runs it missed, instead of building up a backlog.
+ */
+public class TimerWheel {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TimerWheel.class);
+
+    @FunctionalInterface
+    public interface Task {
+        /**
+         * Run the task.
+         *
+         * @param scheduledNanos The {@link System#nanoTime()} at which the task should have run.
+         */
+        void run(long scheduledNanos);
+    }
+
+    private static final class Timer {
+        private final long periodNanos;
+        private final Task task;
+        /**
+         * The next deadline, relative to the start of the wheel.
+         */
+        private long deadlineNanos;
+        private long deadlineTick;
+        private Timer next;
+
+        Timer(final long periodNanos, final Task task) {
+            this.periodNanos = periodNanos;
+            this.task = task;
+        }
+    }
+
+    private final String name;
+    private final long tickNanos;
+    private final Timer[] slots;
+    private final Queue<Timer> pending = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+
+    private volatile boolean running;
+    private long startNanos;
+    private long tick;
+
+    /**
+     * Create a new wheel.
+     *
+     * @param name The name, for the thread.
+     * @param tickNanos The duration of a tick.
+     * @param size The number of slots.
+     */
+    public TimerWheel(final String name, final long tickNanos, final int size) {
+        this.name = name;
+        this.tickNanos = Math.max(1, tickNanos);
+        this.slots = new Timer[size];
+        this.thread = new Thread(this::run, name + "-timer-wheel");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Schedule a periodic timer. It fires for the first time after one period.
+     *
+     * @param periodNanos The period.
+     * @param task The task to run.
+     */
+    public void schedule(final long periodNanos, final Task task) {
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + periodNanos);
+        }
+        this.pending.add(new Timer(periodNanos, task));
+    }
+
+    public void start() {
+        this.running = true;
+        this.startNanos = System.nanoTime();
+        this.thread.start();
+    }
+
+    public void stop() {
+        this.running = false;
+        LockSupport.unpark(this.thread);
+    }
+
+    private void run() {
+        while (this.running) {
+            var deadline = this.startNanos + (this.tick + 1) * this.tickNanos;
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+                if (!this.running) {
+                    return;
+                }
+            }
+
+            this.tick++;
+
+            Timer timer;
+            while ((timer = this.pending.poll()) != null) {
+                timer.deadlineNanos = this.tick * this.tickNanos + timer.periodNanos;
+                place(timer);
+            }
+
+            processSlot();
+        }
+    }
+
+    private void processSlot() {
+        var index = (int) (this.tick % this.slots.length);
+
+        Timer remaining = null;
+        var due = new ArrayList<Timer>();
+
+        for (var timer = this.slots[index]; timer != null; ) {
+            var next = timer.next;
+            if (timer.deadlineTick <= this.tick) {
+                due.add(timer);
+            } else {
+                timer.next = remaining;
+                remaining = timer;
+            }
+            timer = next;
+        }
+        this.slots[index] = remaining;
+
+        for (var timer : due) {
+            try {
+                timer.task.run(this.startNanos + timer.deadlineNanos);
+            } catch (Exception e) {
+                LOG.warn("Failed to run timer of '{}'", this.name, e);
+            }
+
+            timer.deadlineNanos += timer.periodNanos;
+            var behind = System.nanoTime() - this.startNanos - timer.deadlineNanos;
+            if (behind > timer.periodNanos) {
+                timer.deadlineNanos += behind / timer.periodNanos * timer.periodNanos;
+            }
+            place(timer);
+        }
+    }
+
+    private void place(final Timer timer) {
+        // round up, never fire early
+        timer.deadlineTick = Math.max(this.tick + 1, (timer.deadlineNanos + this.tickNanos - 1) / this.tickNanos);
+        var index = (int) (timer.deadlineTick % this.slots.length);
+        timer.next = this.slots[index];
+        this.slots[index] = timer;
+    }
+}